@@ -37,6 +37,44 @@ public final class ConfigurationProperties {
     public final static String BN_DISCARD_REQUEST_TIMEOUT_PROPERTY_NAME = "BEACON_NETWORK_DISCARD_REQUEST_TIMEOUT";
     public final static String BN_REFRESH_METADATA_TIMEOUT_PROPERTY_NAME = "BEACON_NETWORK_REFRESH_METADATA_TIMEOUT";
     
+    public final static String BN_RESULTS_PASSTHROUGH_PROPERTY_NAME = "BEACON_NETWORK_RESULTS_PASSTHROUGH";
+    public final static String BN_RESULTS_DEDUP_PROPERTY_NAME = "BEACON_NETWORK_RESULTS_DEDUP";
+    public final static String BN_SORT_KEYS_PROPERTY_NAME = "BEACON_NETWORK_SORT_KEYS";
+    public final static String BN_GLOBAL_PAGINATION_PROPERTY_NAME = "BEACON_NETWORK_GLOBAL_PAGINATION";
+    public final static String BN_DEFAULT_LIMIT_PROPERTY_NAME = "BEACON_NETWORK_DEFAULT_LIMIT";
+    
+    public final static String BN_FILTERS_PLANNER_PROPERTY_NAME = "BEACON_NETWORK_FILTERS_PLANNER";
+    public final static String BN_CAPABILITY_ROUTING_PROPERTY_NAME = "BEACON_NETWORK_CAPABILITY_ROUTING";
+    public final static String BN_DATASETS_ROUTING_PROPERTY_NAME = "BEACON_NETWORK_DATASETS_ROUTING";
+    public final static String BN_ENTRY_OWNERS_SIZE_PROPERTY_NAME = "BEACON_NETWORK_ENTRY_OWNERS_SIZE";
+    
+    public final static String BN_PREFETCH_PROPERTY_NAME = "BEACON_NETWORK_PREFETCH";
+    public final static String BN_PREFETCH_TTL_PROPERTY_NAME = "BEACON_NETWORK_PREFETCH_TTL";
+    public final static String BN_PREFETCH_MAX_LOAD_PROPERTY_NAME = "BEACON_NETWORK_PREFETCH_MAX_LOAD";
+    
+    public final static String BN_CACHE_PROPERTY_NAME = "BEACON_NETWORK_CACHE";
+    public final static String BN_CACHE_SIZE_PROPERTY_NAME = "BEACON_NETWORK_CACHE_SIZE";
+    public final static String BN_CACHE_TTL_PROPERTY_NAME = "BEACON_NETWORK_CACHE_TTL";
+    public final static String BN_CACHE_TTLS_PROPERTY_NAME = "BEACON_NETWORK_CACHE_TTLS";
+    public final static String BN_CACHE_STALE_PROPERTY_NAME = "BEACON_NETWORK_CACHE_STALE";
+
+    public final static String BN_COALESCING_PROPERTY_NAME = "BEACON_NETWORK_COALESCING";
+
+    public final static String BN_VALIDATION_SAMPLING_RATE_PROPERTY_NAME = "BEACON_NETWORK_VALIDATION_SAMPLING_RATE";
+    public final static String BN_VALIDATION_TRUST_THRESHOLD_PROPERTY_NAME = "BEACON_NETWORK_VALIDATION_TRUST_THRESHOLD";
+    public final static String BN_VALIDATION_COOLDOWN_PROPERTY_NAME = "BEACON_NETWORK_VALIDATION_COOLDOWN";
+    
+    public final static String BN_LOG_PAYLOAD_LIMIT_PROPERTY_NAME = "BEACON_NETWORK_LOG_PAYLOAD_LIMIT";
+    
+    public final static String BN_MAX_RESPONSE_SIZE_PROPERTY_NAME = "BEACON_NETWORK_MAX_RESPONSE_SIZE";
+    public final static String BN_SPILL_THRESHOLD_PROPERTY_NAME = "BEACON_NETWORK_SPILL_THRESHOLD";
+    
+    /**
+     * Stream the response as beacons answer. The progressive response is not
+     * cached, coalesced, paginated, sorted, deduplicated nor spilled.
+     */
+    public final static String BN_PROGRESSIVE_RESPONSE_PROPERTY_NAME = "BEACON_NETWORK_PROGRESSIVE_RESPONSE";
+    
     public final static String BEACON_NETWORK_CONFIG_DIR = "BEACON-INF/";
     public final static String BEACON_NETWORK_CONFIG_FILE = "beacon-network.json";
     public final static String BEACON_NETWORK_INFO_FILE = "beacon-network-info.json";
@@ -49,11 +87,70 @@ public final class ConfigurationProperties {
     public final static long BN_REQUEST_TIMEOUT_PROPERTY;
     public final static long BN_REFRESH_METADATA_TIMEOUT_PROPERTY;
     
+    public final static boolean BN_RESULTS_PASSTHROUGH_PROPERTY;
+    public final static String BN_RESULTS_DEDUP_PROPERTY;
+    public final static String BN_SORT_KEYS_PROPERTY;
+    public final static boolean BN_GLOBAL_PAGINATION_PROPERTY;
+    public final static long BN_DEFAULT_LIMIT_PROPERTY;
+    
+    public final static boolean BN_FILTERS_PLANNER_PROPERTY;
+    public final static boolean BN_CAPABILITY_ROUTING_PROPERTY;
+    public final static boolean BN_DATASETS_ROUTING_PROPERTY;
+    public final static long BN_ENTRY_OWNERS_SIZE_PROPERTY;
+    
+    public final static boolean BN_PREFETCH_PROPERTY;
+    public final static long BN_PREFETCH_TTL_PROPERTY;
+    public final static long BN_PREFETCH_MAX_LOAD_PROPERTY;
+    
+    public final static boolean BN_CACHE_PROPERTY;
+    public final static long BN_CACHE_SIZE_PROPERTY;
+    public final static long BN_CACHE_TTL_PROPERTY;
+    public final static String BN_CACHE_TTLS_PROPERTY;
+    public final static long BN_CACHE_STALE_PROPERTY;
+    
+    public final static boolean BN_COALESCING_PROPERTY;
+    
+    public final static long BN_VALIDATION_SAMPLING_RATE_PROPERTY;
+    public final static long BN_VALIDATION_TRUST_THRESHOLD_PROPERTY;
+    public final static long BN_VALIDATION_COOLDOWN_PROPERTY;
+    
+    public final static long BN_LOG_PAYLOAD_LIMIT_PROPERTY;
+    
+    public final static long BN_MAX_RESPONSE_SIZE_PROPERTY;
+    public final static long BN_SPILL_THRESHOLD_PROPERTY;
+    
+    public final static boolean BN_PROGRESSIVE_RESPONSE_PROPERTY;
+
     static {
         BN_CONFIG_DIR_PROPERTY = System.getenv(BN_CONFIG_DIR_PROPERTY_NAME);
         BN_DISCARD_REQUEST_TIMEOUT_PROPERTY = readProperty(BN_DISCARD_REQUEST_TIMEOUT_PROPERTY_NAME, 5);
         BN_REQUEST_TIMEOUT_PROPERTY = readProperty(BN_REQUEST_TIMEOUT_PROPERTY_NAME, 600);
         BN_REFRESH_METADATA_TIMEOUT_PROPERTY = readProperty(BN_REFRESH_METADATA_TIMEOUT_PROPERTY_NAME, 60);
+        BN_RESULTS_PASSTHROUGH_PROPERTY = readProperty(BN_RESULTS_PASSTHROUGH_PROPERTY_NAME, true);
+        BN_RESULTS_DEDUP_PROPERTY = System.getenv(BN_RESULTS_DEDUP_PROPERTY_NAME);
+        BN_SORT_KEYS_PROPERTY = System.getenv(BN_SORT_KEYS_PROPERTY_NAME);
+        BN_GLOBAL_PAGINATION_PROPERTY = readProperty(BN_GLOBAL_PAGINATION_PROPERTY_NAME, true);
+        BN_DEFAULT_LIMIT_PROPERTY = readProperty(BN_DEFAULT_LIMIT_PROPERTY_NAME, 10);
+        BN_FILTERS_PLANNER_PROPERTY = readProperty(BN_FILTERS_PLANNER_PROPERTY_NAME, false);
+        BN_CAPABILITY_ROUTING_PROPERTY = readProperty(BN_CAPABILITY_ROUTING_PROPERTY_NAME, true);
+        BN_DATASETS_ROUTING_PROPERTY = readProperty(BN_DATASETS_ROUTING_PROPERTY_NAME, true);
+        BN_ENTRY_OWNERS_SIZE_PROPERTY = readProperty(BN_ENTRY_OWNERS_SIZE_PROPERTY_NAME, 65536);
+        BN_PREFETCH_PROPERTY = readProperty(BN_PREFETCH_PROPERTY_NAME, false);
+        BN_PREFETCH_TTL_PROPERTY = readProperty(BN_PREFETCH_TTL_PROPERTY_NAME, 30);
+        BN_PREFETCH_MAX_LOAD_PROPERTY = readProperty(BN_PREFETCH_MAX_LOAD_PROPERTY_NAME, 8);
+        BN_CACHE_PROPERTY = readProperty(BN_CACHE_PROPERTY_NAME, false);
+        BN_CACHE_SIZE_PROPERTY = readProperty(BN_CACHE_SIZE_PROPERTY_NAME, 64 * 1024 * 1024);
+        BN_CACHE_TTL_PROPERTY = readProperty(BN_CACHE_TTL_PROPERTY_NAME, 60);
+        BN_CACHE_TTLS_PROPERTY = System.getenv(BN_CACHE_TTLS_PROPERTY_NAME);
+        BN_CACHE_STALE_PROPERTY = readProperty(BN_CACHE_STALE_PROPERTY_NAME, 30);
+        BN_COALESCING_PROPERTY = readProperty(BN_COALESCING_PROPERTY_NAME, true);
+        BN_VALIDATION_SAMPLING_RATE_PROPERTY = readProperty(BN_VALIDATION_SAMPLING_RATE_PROPERTY_NAME, 10);
+        BN_VALIDATION_TRUST_THRESHOLD_PROPERTY = readProperty(BN_VALIDATION_TRUST_THRESHOLD_PROPERTY_NAME, 100);
+        BN_VALIDATION_COOLDOWN_PROPERTY = readProperty(BN_VALIDATION_COOLDOWN_PROPERTY_NAME, 3600);
+        BN_LOG_PAYLOAD_LIMIT_PROPERTY = readProperty(BN_LOG_PAYLOAD_LIMIT_PROPERTY_NAME, 65536);
+        BN_MAX_RESPONSE_SIZE_PROPERTY = readProperty(BN_MAX_RESPONSE_SIZE_PROPERTY_NAME, 256 * 1024 * 1024);
+        BN_SPILL_THRESHOLD_PROPERTY = readProperty(BN_SPILL_THRESHOLD_PROPERTY_NAME, 64 * 1024 * 1024);
+        BN_PROGRESSIVE_RESPONSE_PROPERTY = readProperty(BN_PROGRESSIVE_RESPONSE_PROPERTY_NAME, false);
     }
     
     private static long readProperty(String property, long def) {
@@ -65,4 +162,12 @@ public final class ConfigurationProperties {
         }
         return def;
     }
+
+    private static boolean readProperty(String property, boolean def) {
+        final String val = System.getenv(property);
+        if (val != null) {
+            return Boolean.parseBoolean(val);
+        }
+        return def;
+    }
 }
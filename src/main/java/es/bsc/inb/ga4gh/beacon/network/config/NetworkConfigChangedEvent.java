@@ -25,6 +25,10 @@
 
 package es.bsc.inb.ga4gh.beacon.network.config;
 
+import jakarta.json.JsonObject;
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * The event which is risen when beacon network configuration is changed.
  * 
@@ -35,7 +39,17 @@ public class NetworkConfigChangedEvent {
     
     public final String[] beacons;
     
+    /**
+     * Optional beacons' settings by the beacon endpoint.
+     */
+    public final Map<String, JsonObject> settings;
+    
     public NetworkConfigChangedEvent(String[] beacons) {
+        this(beacons, Collections.EMPTY_MAP);
+    }
+
+    public NetworkConfigChangedEvent(String[] beacons, Map<String, JsonObject> settings) {
         this.beacons = beacons;
+        this.settings = settings;
     }
 }
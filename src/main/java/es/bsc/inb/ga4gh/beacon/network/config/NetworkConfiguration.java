@@ -48,11 +48,13 @@ import jakarta.enterprise.event.ObservesAsync;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import jakarta.json.Json;
+import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
 import jakarta.json.JsonValue;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -93,6 +95,11 @@ public class NetworkConfiguration {
     
     private Map<String, List<BeaconValidationMessage>> errors;
     
+    /**
+     * Beacons' settings from the beacon network configuration by the beacon endpoint.
+     */
+    private volatile Map<String, JsonObject> settings;
+
     /**
      * Hashcodes for the Beacons' metadata endpoints.
      * 
@@ -109,6 +116,7 @@ public class NetworkConfiguration {
         metadata = new ConcurrentHashMap();
         errors = new ConcurrentHashMap();
         hashes = new ConcurrentHashMap();
+        settings = Collections.EMPTY_MAP;
 
         Arrays.stream(BeaconMetadataSchema.values()).forEach(s -> metadata.put(s, new ConcurrentHashMap()));
     }
@@ -133,6 +141,7 @@ public class NetworkConfiguration {
      */
     public void onEvent(@ObservesAsync NetworkConfigChangedEvent event) {
 
+        settings = event.settings;
         cleanRemovedBeacons(event);
         updateBeacons(event);
 
@@ -322,6 +331,18 @@ public class NetworkConfiguration {
         return endpoints;
     }
 
+    /**
+     * Get the beacon's settings defined in the beacon network configuration.
+     * 
+     * @param beaconId the beacon identifier
+     * 
+     * @return the beacon's settings or null
+     */
+    public JsonObject getSettings(String beaconId) {
+        final String endpoint = endpoints.get(beaconId);
+        return endpoint == null ? null : settings.get(endpoint);
+    }
+
     /**
      * Get the metadata JSON Schema parsing errors.
      * 
@@ -30,6 +30,10 @@ import static es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties.BEA
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
 import jakarta.json.bind.JsonbBuilder;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
@@ -48,6 +52,11 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +71,7 @@ import java.util.logging.Logger;
 public class NetworkConfigurationListener implements ServletContextListener {
 
     private String[] beacon_network_urls;
+    private Map<String, JsonObject> beacon_network_settings = Collections.EMPTY_MAP;
     
     private BeaconConfigFileWatcher watcher;
     private ScheduledExecutorService timer;
@@ -90,7 +100,7 @@ public class NetworkConfigurationListener implements ServletContextListener {
                         Level.SEVERE, "no default beacon list file found: {0}", 
                         BEACON_NETWORK_CONFIG_DIR + BEACON_NETWORK_CONFIG_FILE);
             } else {
-                beacon_network_urls = JsonbBuilder.create().fromJson(in, String[].class);
+                read(in);
             }
         } catch (IOException ex) {
             Logger.getLogger(NetworkConfigurationListener.class.getName()).log(Level.SEVERE, null, ex);
@@ -98,7 +108,7 @@ public class NetworkConfigurationListener implements ServletContextListener {
 
         timer = Executors.newScheduledThreadPool(2);
         final Runnable watchdog = () -> config_changed_event.fireAsync(
-                new NetworkConfigChangedEvent(beacon_network_urls));
+                new NetworkConfigChangedEvent(beacon_network_urls, beacon_network_settings));
 
         timer.scheduleAtFixedRate(watchdog, ConfigurationProperties.BN_REFRESH_METADATA_TIMEOUT_PROPERTY
                 , ConfigurationProperties.BN_REFRESH_METADATA_TIMEOUT_PROPERTY, TimeUnit.MINUTES);
@@ -106,7 +116,7 @@ public class NetworkConfigurationListener implements ServletContextListener {
         if (watcher != null) {
             timer.submit(watcher);
         } else if (beacon_network_urls != null && beacon_network_urls.length > 0) {
-            config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls));
+            config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls, beacon_network_settings));
         }
     }
 
@@ -115,18 +125,45 @@ public class NetworkConfigurationListener implements ServletContextListener {
         timer.shutdown();
     }
     
+    /**
+     * Read the beacons list.
+     * 
+     * The list contains either beacons' endpoints or objects with the endpoint 
+     * ('url') and the beacon's settings (e.g. 'maxResponseSize').
+     * 
+     * @param in the beacon network configuration file stream
+     */
+    private void read(InputStream in) {
+        final JsonArray beacons = JsonbBuilder.create().fromJson(in, JsonArray.class);
+        
+        final List<String> urls = new ArrayList();
+        final Map<String, JsonObject> settings = new HashMap();
+        for (JsonValue beacon : beacons) {
+            if (beacon instanceof JsonString str) {
+                urls.add(str.getString());
+            } else if (beacon instanceof JsonObject obj) {
+                final String url = obj.getString("url", null);
+                if (url != null) {
+                    urls.add(url);
+                    settings.put(url, obj);
+                }
+            }
+        }
+        beacon_network_settings = settings;
+        beacon_network_urls = urls.toArray(String[]::new);
+    }
+
     private void update(Path file) {
         try (InputStream in = Files.newInputStream(file, StandardOpenOption.READ)) {
             if (in != null) {
-                final String[] beacons = JsonbBuilder.create().fromJson(in, String[].class);
-                beacon_network_urls = beacons;
+                read(in);
             }
         } catch (IOException ex) {
             Logger.getLogger(NetworkConfigurationListener.class.getName()).log(Level.SEVERE, null, ex);
         }
         
         if (beacon_network_urls != null) {
-            config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls));
+            config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls, beacon_network_settings));
         }
     }        
 
@@ -163,11 +200,11 @@ public class NetworkConfigurationListener implements ServletContextListener {
                     if (ENTRY_CREATE.equals(kind) || ENTRY_MODIFY.equals(kind)) {
                         update(file);
                     } else if (ENTRY_DELETE.equals(kind)) {
-                        config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls));
+                        config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls, beacon_network_settings));
                     }
                 } while(key.reset() && !Thread.currentThread().isInterrupted());
             } catch (IOException ex) {
-                config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls));
+                config_changed_event.fireAsync(new NetworkConfigChangedEvent(beacon_network_urls, beacon_network_settings));
                 Logger.getLogger(BeaconConfigFileWatcher.class.getName()).log(Level.SEVERE, null, ex);
             } catch (InterruptedException ex) {}
         }
@@ -0,0 +1,174 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.BeaconConfiguration;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.SecurityAttributes;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.ServiceConfiguration;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfigUpdatedEvent;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfiguration;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.ObservesAsync;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Beacons' capabilities precomputed from their configurations.
+ * 
+ * Every beacon gets a capabilities bitmask (granularities, test mode, access
+ * levels), so checking whether the beacon can honour the request is a single
+ * mask operation instead of walking the configuration on every request.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class BeaconCapabilities {
+
+    // from the coarsest to the finest
+    public final static List<String> GRANULARITIES = 
+            List.of("boolean", "count", "aggregated", "record");
+
+    // bits 0..3 are the supported granularities
+    private final static int TEST_MODE = 1 << 4;
+    private final static int PUBLIC = 1 << 5;
+    private final static int AUTHORIZED = 1 << 6;
+    private final static int SECURED = 1 << 7; // declares levels above PUBLIC
+
+    private final static int ALL_GRANULARITIES = (1 << GRANULARITIES.size()) - 1;
+
+    @Inject
+    private NetworkConfiguration configuration;
+    
+    private volatile Map<String, Integer> capabilities = Collections.EMPTY_MAP;
+
+    /**
+     * Called when beacon network configuration has been updated.
+     * 
+     * @param event update event
+     */
+    public void onEvent(@ObservesAsync NetworkConfigUpdatedEvent event) {
+        final Map<String, Integer> map = new HashMap();
+        final Map<String, ServiceConfiguration> configurations = configuration.getConfigurations();
+        if (configurations != null) {
+            for (Map.Entry<String, ServiceConfiguration> entry : configurations.entrySet()) {
+                map.put(entry.getKey(), getCapabilities(entry.getKey(), entry.getValue()));
+            }
+        }
+        capabilities = map;
+    }
+
+    /**
+     * Get the finest granularity the beacon can provide.
+     * 
+     * The beacon's 'defaultGranularity' is the granularity for the public
+     * access, so it limits only the requests without the authorization or 
+     * to the beacons that declare no security levels above 'PUBLIC'.
+     * 
+     * @param beaconId the beacon identifier
+     * @param authorized whether the request has the authorization
+     * 
+     * @return the granularity rank in GRANULARITIES
+     */
+    public int getGranularity(String beaconId, boolean authorized) {
+        final Integer caps = capabilities.get(beaconId);
+        if (caps == null || (authorized && (caps & SECURED) != 0)) {
+            return GRANULARITIES.size() - 1;
+        }
+        return 31 - Integer.numberOfLeadingZeros(caps & ALL_GRANULARITIES);
+    }
+
+    /**
+     * Find the beacons that can not honour the request: do not support the test
+     * mode or require the authorization the request lacks.
+     * 
+     * Beacons are not pruned for the granularity, because they are asked for 
+     * the coarser one instead.
+     * 
+     * @param beacons the beacons matched for the query
+     * @param canonical the canonical query
+     * @param authorized whether the request has the authorization
+     * 
+     * @return the beacons that should not be queried
+     */
+    public List<String> prune(Collection<String> beacons, CanonicalQuery canonical, 
+            boolean authorized) {
+
+        int required = authorized ? AUTHORIZED : PUBLIC;
+        if (Boolean.TRUE.equals(canonical.getTestMode())) {
+            required |= TEST_MODE;
+        }
+
+        final Map<String, Integer> snapshot = capabilities;
+
+        List<String> pruned = Collections.EMPTY_LIST;
+        for (String beaconId : beacons) {
+            final Integer caps = snapshot.get(beaconId);
+            if (caps != null && (caps & required) != required) {
+                if (pruned.isEmpty()) {
+                    pruned = new ArrayList();
+                }
+                pruned.add(beaconId);
+            }
+        }
+        return pruned;
+    }
+
+    private int getCapabilities(String beaconId, ServiceConfiguration service_configuration) {
+        int caps = ALL_GRANULARITIES | TEST_MODE | PUBLIC | AUTHORIZED;
+
+        final BeaconConfiguration beacon_configuration = service_configuration.getResponse();
+        final SecurityAttributes attributes = beacon_configuration == null 
+                ? null : beacon_configuration.getSecurityAttributes();
+        if (attributes != null) {
+            final int rank = GRANULARITIES.indexOf(attributes.getDefaultGranularity());
+            if (rank >= 0) {
+                caps &= ~ALL_GRANULARITIES | ((1 << (rank + 1)) - 1);
+            }
+            final List<String> levels = attributes.getSecurityLevels();
+            if (levels != null && !levels.isEmpty() && !levels.contains("PUBLIC")) {
+                caps &= ~PUBLIC;
+            }
+            if (levels != null && levels.stream().anyMatch(l -> !"PUBLIC".equals(l))) {
+                caps |= SECURED;
+            }
+        }
+
+        // the test mode support is not declared by beacons, but may be set 
+        // in the beacon network configuration ('testMode': false)
+        final JsonObject settings = configuration.getSettings(beaconId);
+        if (settings != null && !settings.getBoolean("testMode", true)) {
+            caps &= ~TEST_MODE;
+        }
+
+        return caps;
+    }
+}
@@ -25,28 +25,32 @@
 
 package es.bsc.inb.ga4gh.beacon.network.engine;
 
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.Pagination;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestBody;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestMeta;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestQuery;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.AbstractBeaconResponse;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconError;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconErrorResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
 import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfiguration;
 import es.bsc.inb.ga4gh.beacon.network.log.BeaconLog;
 import es.bsc.inb.ga4gh.beacon.network.log.BeaconLogEntity;
-import es.bsc.inb.ga4gh.beacon.validator.BeaconFrameworkSchema;
-import es.elixir.bsc.json.schema.JsonSchemaReader;
-import es.elixir.bsc.json.schema.model.JsonSchema;
+import es.bsc.inb.ga4gh.beacon.network.log.BeaconLogLevel;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.HttpMethod;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.core.UriBuilder;
-import java.net.URL;
+import java.io.IOException;
+import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
 import java.net.http.HttpClient.Version;
@@ -56,14 +60,18 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,11 +82,20 @@ import java.util.logging.Logger;
 @ApplicationScoped
 public class BeaconNetworkAggregator {
 
+    // the same for all beacons' requests
+    private final static String[] HEADERS = {
+        HttpHeaders.USER_AGENT, "BN/2.0.0",
+        HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON,
+        HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON};
+
     @Inject
     private BeaconNetworkRequestAnalyzer requestAnalyzer;
     
     @Inject
     private BeaconEndpointsMatcher matcher;
+
+    @Inject
+    private EndpointsDefinitions definitions;
     
     @Inject
     private BeaconNetworkResponseBuilder responseBuilder;
@@ -86,27 +103,66 @@ public class BeaconNetworkAggregator {
     @Inject
     private BeaconLog log;
 
-    private JsonSchema schema;
+    @Inject
+    private BeaconResponseValidation validation;
+
+    @Inject
+    private NetworkConfiguration config;
+    
+    @Inject
+    private BeaconPagePrefetcher prefetcher;
+
+    @Inject
+    private FilteringTermsIndex filtering_terms_index;
+
+    @Inject
+    private BeaconCapabilities capabilities;
+
+    @Inject
+    private GenomicRoutingIndex genomic_routing_index;
+
+    @Inject
+    private DatasetsIndex datasets_index;
+
+    @Inject
+    private EntryOwners entry_owners;
+
+    @Inject
+    private BeaconResultsCache cache;
+
+    @Inject
+    private RequestCoalescer coalescer;
     
     private HttpClient http_client;
+    private HttpClient prefetch_client;
     
     @PostConstruct
     public void init() {
+        if (ConfigurationProperties.BN_PROGRESSIVE_RESPONSE_PROPERTY) {
+            Logger.getLogger(BeaconNetworkAggregator.class.getName()).log(Level.WARNING, 
+                    "{0} is set: responses are neither cached, coalesced, paginated, " +
+                    "sorted, deduplicated nor spilled", 
+                    ConfigurationProperties.BN_PROGRESSIVE_RESPONSE_PROPERTY_NAME);
+        }
+
         http_client = HttpClient.newBuilder()
         .version(Version.HTTP_2)
         .followRedirects(Redirect.ALWAYS)
         .connectTimeout(Duration.ofSeconds(30))
         .build();
         
-        try {
-            final URL url = BeaconNetworkAggregator.class.getClassLoader().getResource(BeaconFrameworkSchema.BEACON_RESPONSE_SCHEMA.SCHEMA);
-            if (url != null) {
-                schema = JsonSchemaReader.getReader().read(url);
-            }
-        } catch(Exception ex) {
-            Logger.getLogger(BeaconNetworkAggregator.class.getName()).log(Level.SEVERE, "error loading schema {0} {1}", 
-                    new Object[]{BeaconFrameworkSchema.BEACON_RESPONSE_SCHEMA.SCHEMA, ex.getMessage()});
-        }
+        // separate client with the bounded executor for the prefetched pages,
+        // so prefetching does not compete for the threads of the client's requests
+        prefetch_client = HttpClient.newBuilder()
+        .version(Version.HTTP_2)
+        .followRedirects(Redirect.ALWAYS)
+        .connectTimeout(Duration.ofSeconds(30))
+        .executor(Executors.newFixedThreadPool(2, r -> {
+            final Thread thread = new Thread(r, "bn-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }))
+        .build();
     }
 
     public Response aggregate(HttpServletRequest request) {                
@@ -126,27 +182,422 @@ public class BeaconNetworkAggregator {
             query = requestAnalyzer.getRequestQuery(request);
         }
 
+        setDefaultLimit(query);
+
+        final Map<String, Map.Entry<String, String>> matched_endpoints = matcher.match(request);
+        final CanonicalQuery canonical = requestAnalyzer.getCanonicalQuery(request, data, query, 
+                matched_endpoints.isEmpty() ? null : matched_endpoints.values().iterator().next());
+
+        final String cache_key = cache.getKey(request, meta, query, canonical);
+        final BeaconResultsCache.Cached cached = cache_key == null ? null : cache.get(cache_key);
+        if (cached != null && !cached.stale()) {
+            return responseBuilder.respond(cached.response());
+        }
+
+        final List<String> not_queried = plan(request, canonical, matched_endpoints);
+
+        ResultsPage page = getResultsPage(request, query);
+
+        if (cached != null) {
+            if (cache.revalidate(cache_key)) {
+                revalidate(request, meta, query, canonical, data, 
+                        matched_endpoints, not_queried, page, cache_key);
+            }
+            return responseBuilder.respond(cached.response());
+        }
+
+        final String entry_id = getEntryId(canonical, matched_endpoints);
+        if (entry_id != null) {
+            final Response response = lookup(request, meta, query, canonical, data, 
+                    matched_endpoints, entry_id);
+            if (response != null) {
+                return response;
+            }
+        }
+
+        if (ConfigurationProperties.BN_PROGRESSIVE_RESPONSE_PROPERTY) {
+            final List<CompletableFuture<HttpResponse>> invocations = 
+                    invoke(http_client, request, matched_endpoints, data, query, page);
+
+            final List<CompletableFuture<AbstractBeaconResponse>> beacons_responses = new ArrayList();
+            for (CompletableFuture<HttpResponse> invocation : invocations) {
+                beacons_responses.add(invocation.thenApply(
+                        res -> res == null ? null : (AbstractBeaconResponse)res.body()));
+            }
+            return responseBuilder.stream(meta, query, canonical, not_queried, beacons_responses);
+        }
+
+        // identical request is already being aggregated
+        final String flight_key = coalescer.getKey(request, meta, query, canonical);
+        final CompletableFuture<BeaconResponse> flight = flight_key == null ? null : new CompletableFuture();
+        if (flight != null) {
+            CompletableFuture<BeaconResponse> leading;
+            // when the leader fails, only one of its followers becomes the new leader
+            while ((leading = coalescer.join(flight_key, flight)) != null) {
+                final BeaconResponse shared = coalescer.follow(leading);
+                if (shared != null) {
+                    return responseBuilder.respond(
+                            responseBuilder.withMeta(shared, meta, query, canonical));
+                }
+            }
+        }
+
+        prefetcher.enter();
+        try {
+            List<CompletableFuture<BeaconResponseAccumulator>> accumulators = null;
+
+            final String prefetch_key = page == null ? null : prefetcher.getKey(request, data);
+            if (prefetch_key != null) {
+                final BeaconPagePrefetcher.Page prefetched = prefetcher.take(prefetch_key, 
+                        request.getParameter(BeaconNetworkRequestAnalyzer.CURSOR_PARAMETER));
+                if (prefetched != null) {
+                    page = prefetched.page();
+                    accumulators = prefetched.accumulators();
+                }
+            }
+            
+            if (accumulators == null) {
+                accumulators = accumulate(query, invoke(http_client, request, 
+                        matched_endpoints, data, query, page));
+            }
+
+            final BeaconResponse aggregated = combine(meta, query, canonical, 
+                    matched_endpoints, not_queried, page, accumulators, cache_key);
+            if (flight != null) {
+                flight.complete(aggregated);
+            }
+
+            if (prefetch_key != null && page.getNextCursor() != null) {
+                prefetch(request, matched_endpoints, data, query, page, prefetch_key);
+            }
+            
+            return responseBuilder.respond(aggregated);
+        } finally {
+            prefetcher.exit();
+            if (flight != null) {
+                coalescer.land(flight_key, flight);
+            }
+        }
+    }
+
+    /**
+     * Combine the beacons' responses into the beacon network response and 
+     * put it into the cache.
+     * 
+     * @param meta beacon network request metadata
+     * @param query beacon network query
+     * @param canonical the canonical query
+     * @param matched_endpoints the beacons' endpoints being queried
+     * @param not_queried the beacons which are not queried
+     * @param page the network results page or null if not paginated
+     * @param accumulators accumulated beacons' responses futures
+     * @param cache_key the request key or null if the response is not cached
+     * 
+     * @return the aggregated beacon network response
+     */
+    private BeaconResponse combine(BeaconRequestMeta meta,
+            BeaconRequestQuery query,
+            CanonicalQuery canonical,
+            Map<String, Map.Entry<String, String>> matched_endpoints,
+            List<String> not_queried,
+            ResultsPage page,
+            List<CompletableFuture<BeaconResponseAccumulator>> accumulators,
+            String cache_key) {
+
+        final List<BeaconResponseAccumulator> responses = getResultsets(accumulators);
+        learn(canonical.getEntryType(), responses);
+
+        // timed out beacons have no accumulators
+        int errors = accumulators.size() - responses.size();
+        for (BeaconResponseAccumulator response : responses) {
+            errors += response.getErrors();
+        }
+
+        if (!not_queried.isEmpty()) {
+            final BeaconResponseAccumulator skipped = new BeaconResponseAccumulator();
+            skipped.addNotQueried(not_queried);
+            responses.add(skipped);
+        }
+
+        final BeaconResponse aggregated = responseBuilder.combine(meta, query, canonical, 
+                page, responses);
+
+        if (cache_key != null) {
+            final List<String> beacons = new ArrayList(matched_endpoints.keySet());
+            beacons.addAll(not_queried);
+            cache.put(cache_key, canonical, beacons, aggregated, errors);
+        }
+        return aggregated;
+    }
+
+    /**
+     * Refresh the stale cached response in the background.
+     * 
+     * @param request the client's request
+     * @param meta beacon network request metadata
+     * @param query beacon network query
+     * @param canonical the canonical query
+     * @param data the client's request content
+     * @param matched_endpoints the beacons' endpoints to be queried
+     * @param not_queried the beacons which are not queried
+     * @param page the network results page or null if not paginated
+     * @param cache_key the request key
+     */
+    private void revalidate(HttpServletRequest request,
+            BeaconRequestMeta meta,
+            BeaconRequestQuery query,
+            CanonicalQuery canonical,
+            byte[] data,
+            Map<String, Map.Entry<String, String>> matched_endpoints,
+            List<String> not_queried,
+            ResultsPage page,
+            String cache_key) {
+
+        final List<CompletableFuture<BeaconResponseAccumulator>> accumulators = 
+                accumulate(query, invoke(prefetch_client, new RequestSnapshot(request), 
+                        matched_endpoints, data, query, page));
+
+        CompletableFuture.allOf(accumulators.toArray(CompletableFuture[]::new))
+                .whenComplete((r, ex) -> {
+                    try {
+                        combine(meta, query, canonical, matched_endpoints, 
+                                not_queried, page, accumulators, cache_key);
+                    } catch (Exception e) {
+                        Logger.getLogger(BeaconNetworkAggregator.class.getName()).log(
+                                Level.INFO, e.getMessage());
+                    } finally {
+                        cache.release(cache_key);
+                    }
+                });
+    }
+
+    /**
+     * Send the single entry request only to the beacon known to own the entry.
+     * 
+     * @param request the client's request
+     * @param meta beacon network request metadata
+     * @param query beacon network query
+     * @param canonical the canonical query
+     * @param data the client's request content
+     * @param matched_endpoints the beacons' endpoints matched for the request
+     * @param entry_id the requested entry identifier
+     * 
+     * @return the owner's response or null if the owner is unknown or has no entry
+     */
+    private Response lookup(HttpServletRequest request, 
+            BeaconRequestMeta meta,
+            BeaconRequestQuery query,
+            CanonicalQuery canonical,
+            byte[] data,
+            Map<String, Map.Entry<String, String>> matched_endpoints,
+            String entry_id) {
+
+        final String entry_type = canonical.getEntryType();
+        final String owner_type = entry_type.substring(0, entry_type.indexOf(':'));
+        final String owner = entry_owners.getOwner(owner_type, entry_id);
+        if (owner == null || !matched_endpoints.containsKey(owner)) {
+            return null;
+        }
+
+        final ResultsPage page = getResultsPage(request, query);
+        final List<BeaconResponseAccumulator> responses = getResultsets(accumulate(query, 
+                invoke(http_client, request, Map.of(owner, matched_endpoints.get(owner)), 
+                        data, query, page)));
+
+        if (!hasResults(responses)) {
+            entry_owners.forget(owner_type, entry_id);
+            return null;
+        }
+
+        entry_owners.confirm(owner_type, entry_id);
+        learn(entry_type, responses);
+
+        return responseBuilder.build(meta, query, canonical, page, responses);
+    }
+
+    /**
+     * Get the entry identifier of the single entry request 
+     * (e.g. '/individuals/{id}' or '/g_variants/{id}/biosamples').
+     * 
+     * @param canonical the canonical query
+     * @param matched_endpoints the beacons' endpoints matched for the request
+     * 
+     * @return the entry identifier or null if it is not the single entry request
+     */
+    private String getEntryId(CanonicalQuery canonical, 
+            Map<String, Map.Entry<String, String>> matched_endpoints) {
+
+        final List<String> path_parameters = canonical.getPathParameters();
+        if (matched_endpoints.size() > 1 && !path_parameters.isEmpty() &&
+            canonical.getEntryType().indexOf(':') > 0) {
+            final String entry_id = path_parameters.get(path_parameters.size() - 1);
+            return entry_id.isEmpty() ? null : entry_id;
+        }
+        return null;
+    }
+
+    /**
+     * Learn the owners of the returned entries.
+     * 
+     * @param entry_type the requested endpoint entry type
+     * @param responses accumulated beacons' responses
+     */
+    private void learn(String entry_type, List<BeaconResponseAccumulator> responses) {
+        if (entry_type != null) {
+            final String returned_type = entry_type.substring(entry_type.lastIndexOf(':') + 1);
+            for (BeaconResponseAccumulator response : responses) {
+                entry_owners.learn(returned_type, response.getResultsets());
+            }
+        }
+    }
+
+    /**
+     * Check whether any beacon found something.
+     * 
+     * @param responses accumulated beacons' responses
+     * 
+     * @return true if there are the results
+     */
+    private boolean hasResults(List<BeaconResponseAccumulator> responses) {
+        for (BeaconResponseAccumulator response : responses) {
+            if (Boolean.TRUE.equals(response.getResponseSummary().getExists())) {
+                return true;
+            }
+            for (BeaconResultset resultset : response.getResultsets()) {
+                final List results = resultset.getResults();
+                if (Boolean.TRUE.equals(resultset.getExists()) || 
+                    (results != null && !results.isEmpty())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the beacons which can not honour the request from the matched endpoints.
+     * 
+     * Beacons that do not support the test mode or require the authorization
+     * the request lacks are removed unless BEACON_NETWORK_CAPABILITY_ROUTING is 
+     * disabled. Beacons which can not satisfy the query filters are removed
+     * when BEACON_NETWORK_FILTERS_PLANNER is enabled. Beacons which do not
+     * cover the requested assembly or reference sequence are always removed,
+     * as well as the beacons that do not own the requested datasets (unless
+     * BEACON_NETWORK_DATASETS_ROUTING is disabled).
+     * 
+     * @param request the client's request
+     * @param canonical the canonical query
+     * @param matched_endpoints the beacons' endpoints matched for the request
+     * 
+     * @return the beacons that are not going to be queried
+     */
+    private List<String> plan(HttpServletRequest request, CanonicalQuery canonical,
+            Map<String, Map.Entry<String, String>> matched_endpoints) {
+
+        final List<String> not_queried = new ArrayList();
+        if (!matched_endpoints.isEmpty()) {
+            final List<String> pruned = genomic_routing_index.prune(matched_endpoints.keySet(), 
+                    canonical.getRequestParameters());
+            matched_endpoints.keySet().removeAll(pruned);
+            not_queried.addAll(pruned);
+        }
+        if (ConfigurationProperties.BN_DATASETS_ROUTING_PROPERTY && !matched_endpoints.isEmpty()) {
+            final List<String> pruned = datasets_index.prune(matched_endpoints.keySet(), 
+                    canonical.getDatasetIds());
+            matched_endpoints.keySet().removeAll(pruned);
+            not_queried.addAll(pruned);
+        }
+        if (ConfigurationProperties.BN_CAPABILITY_ROUTING_PROPERTY) {
+            final List<String> pruned = capabilities.prune(matched_endpoints.keySet(), canonical, 
+                    request.getHeader(HttpHeaders.AUTHORIZATION) != null);
+            matched_endpoints.keySet().removeAll(pruned);
+            not_queried.addAll(pruned);
+        }
+        if (ConfigurationProperties.BN_FILTERS_PLANNER_PROPERTY) {
+            final List<String> pruned = filtering_terms_index.prune(matched_endpoints.keySet(), 
+                    canonical.getFilterIds(), canonical.getDescendantFilterIds());
+            matched_endpoints.keySet().removeAll(pruned);
+            not_queried.addAll(pruned);
+        }
+        return not_queried;
+    }
+
+    /**
+     * Send the request to all matched beacons.
+     * 
+     * @param client the http client to send the requests
+     * @param request the client's request
+     * @param matched_endpoints the beacons' endpoints matched for the request
+     * @param data the client's request content
+     * @param query beacon network query
+     * @param page the network results page or null if not paginated
+     * 
+     * @return beacons' responses futures
+     */
+    private List<CompletableFuture<HttpResponse>> invoke(
+            HttpClient client,
+            HttpServletRequest request, 
+            Map<String, Map.Entry<String, String>> matched_endpoints,
+            byte[] data,
+            BeaconRequestQuery query,
+            ResultsPage page) {
+
         final UUID xid = UUID.randomUUID();
 
+        final boolean passthrough = isPassthrough(query);
+        final boolean authorized = request.getHeader(HttpHeaders.AUTHORIZATION) != null;
+
         final List<CompletableFuture<HttpResponse>> invocations = new ArrayList();
-        
-        Map<String, Map.Entry<String, String>> matched_endpoints = matcher.match(request);
+
+        // POST contents rewritten for the (skip, limit, granularity) of the beacons
+        final Map<List<Object>, byte[]> contents = new HashMap();
+        JsonObject body = null;
+
         for (Map.Entry<String, Map.Entry<String, String>> entry : matched_endpoints.entrySet()) {
+            if (page != null && page.isExhausted(entry.getKey())) {
+                continue;
+            }
+            
+            // downstream query parameters that differ from the client's ones
+            final String granularity = getGranularity(entry.getKey(), query, authorized);
+            final Pagination pagination = page != null 
+                    ? new Pagination(page.getSkip(entry.getKey()), page.getLimit())
+                    : isSummary(query) ? new Pagination(0, 1) : null;
+
+            final byte[] content;
+            if (data.length == 0 || (pagination == null && granularity == null)) {
+                content = data;
+            } else {
+                final List<Object> key = Arrays.asList(granularity, 
+                        pagination == null ? null : pagination.getSkip(), 
+                        pagination == null ? null : pagination.getLimit());
+                byte[] rewritten = contents.get(key);
+                if (rewritten == null) {
+                    if (body == null) {
+                        body = requestAnalyzer.getBody(data);
+                    }
+                    contents.put(key, rewritten = requestAnalyzer.setQuery(data, body, pagination, granularity));
+                }
+                content = rewritten;
+            }
+
             final Map.Entry<String, String> endpoint = entry.getValue();
             final BeaconResponseProcessor processor = new BeaconResponseProcessor(
                     xid, entry.getKey(), endpoint.getKey(), endpoint.getValue(), 
-                    query != null ? query.getTestMode() : null, data, schema);
+                    query != null ? query.getTestMode() : null, passthrough, 
+                    getMaxResponseSize(entry.getKey()), content, validation);
 
-            final Builder builder = getInvocation(endpoint.getValue(), request);
+            final Builder builder = getInvocation(endpoint.getValue(), request, pagination, granularity);
             builder.method(request.getMethod(), processor);
             final HttpRequest req = builder.build();
 
             CompletableFuture<HttpResponse> future =
-                    http_client.sendAsync(builder.build(), processor)
+                    client.sendAsync(req, processor)
                             .orTimeout(ConfigurationProperties.BN_REQUEST_TIMEOUT_PROPERTY, TimeUnit.SECONDS)
                             .handle((res, ex) -> {
                                 if (res != null) {
                                     log(res);
+                                    processor.release();
                                 } else {
                                     final String err_message = 
                                             String.format("request timeout '%s'", processor.template);
@@ -157,32 +608,201 @@ public class BeaconNetworkAggregator {
                             });
 
             invocations.add(future);
+            
+            if (page != null) {
+                page.addBeacon(entry.getKey());
+            }
         }
-        
-        if (invocations.isEmpty()) {
-            // return error response;
-        }
-        
-        final List<AbstractBeaconResponse> beacons_responses = getResultsets(invocations);
-        return responseBuilder.build(meta, query, beacons_responses);
+
+        return invocations;
     }
 
-    private List<AbstractBeaconResponse> getResultsets(
+    /**
+     * Accumulate beacons' responses as soon as they are received.
+     * 
+     * @param query beacon network query
+     * @param invocations beacons' responses futures
+     * 
+     * @return accumulated beacons' responses futures
+     */
+    private List<CompletableFuture<BeaconResponseAccumulator>> accumulate(
+            BeaconRequestQuery query,
             List<CompletableFuture<HttpResponse>> invocations) {
 
-        final List<AbstractBeaconResponse> responses = new ArrayList();
-        
+        final String include_resultset_responses = query == null 
+                ? null : query.getIncludeResultsetResponses();
+
+        final AtomicLong size = new AtomicLong(); // the size of raw results kept on the heap
+        final List<CompletableFuture<BeaconResponseAccumulator>> accumulators = new ArrayList();
         for (CompletableFuture<HttpResponse> invocation : invocations) {
+            accumulators.add(invocation.thenApply(res -> {
+                final AbstractBeaconResponse body = res == null ? null : (AbstractBeaconResponse)res.body();
+                if (body != null) {
+                    retain(body, size);
+                }
+                return responseBuilder.accumulate(include_resultset_responses, body);
+            }));
+        }
+        return accumulators;
+    }
+
+    /**
+     * Fetch the next page in the background, so it is ready when the client
+     * asks for it.
+     * 
+     * @param request the client's request
+     * @param matched_endpoints the beacons' endpoints matched for the request
+     * @param data the client's request content
+     * @param query beacon network query
+     * @param page the page returned to the client
+     * @param prefetch_key the prefetch key of the client's request
+     */
+    private void prefetch(HttpServletRequest request, 
+            Map<String, Map.Entry<String, String>> matched_endpoints,
+            byte[] data,
+            BeaconRequestQuery query,
+            ResultsPage page, 
+            String prefetch_key) {
+
+        final String cursor = page.getNextCursor().encode();
+        if (prefetcher.admit(prefetch_key)) {
+            final ResultsPage next = page.next();
+            final List<CompletableFuture<BeaconResponseAccumulator>> accumulators;
+            try {
+                accumulators = accumulate(query, invoke(prefetch_client, 
+                        new RequestSnapshot(request), matched_endpoints, data, query, next));
+            } catch (RuntimeException ex) {
+                prefetcher.release();
+                throw ex;
+            }
+            prefetcher.put(prefetch_key, cursor, next, accumulators);
+        }
+    }
+
+    /**
+     * Get the page of the network level pagination.
+     * 
+     * Beacons are not asked for the client's 'skip' and 'limit', but for the
+     * records the next page may need. The progressive response is not paginated.
+     * 
+     * @param request the client's request
+     * @param query beacon network query
+     * 
+     * @return the results page or null if the results are not paginated
+     */
+    private ResultsPage getResultsPage(HttpServletRequest request, BeaconRequestQuery query) {
+        if (ConfigurationProperties.BN_GLOBAL_PAGINATION_PROPERTY && 
+            !ConfigurationProperties.BN_PROGRESSIVE_RESPONSE_PROPERTY && 
+            query != null && !isSummary(query)) {
+            final Pagination pagination = query.getPagination();
+            if (pagination != null && pagination.getLimit() != null && pagination.getLimit() > 0) {
+                return new ResultsPage(requestAnalyzer.getCursor(request), 
+                        pagination.getSkip(), pagination.getLimit());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set the BEACON_NETWORK_DEFAULT_LIMIT when the client omits the 'limit', 
+     * so the results are always capped.
+     * 
+     * @param query beacon network query
+     */
+    private void setDefaultLimit(BeaconRequestQuery query) {
+        if (query != null && ConfigurationProperties.BN_DEFAULT_LIMIT_PROPERTY > 0) {
+            final Pagination pagination = query.getPagination();
+            if (pagination == null) {
+                query.setPagination(new Pagination(0, (int)ConfigurationProperties.BN_DEFAULT_LIMIT_PROPERTY));
+            } else if (pagination.getLimit() == null || pagination.getLimit() <= 0) {
+                pagination.setLimit((int)ConfigurationProperties.BN_DEFAULT_LIMIT_PROPERTY);
+            }
+        }
+    }
+
+    /**
+     * Check whether the client asks only for the existence or the count of records.
+     * No records are needed from beacons in this case.
+     * 
+     * @param query beacon network query
+     * 
+     * @return true for 'boolean' or 'count' requested granularity
+     */
+    private boolean isSummary(BeaconRequestQuery query) {
+        final String granularity = query == null ? null : query.getRequestedGranularity();
+        return "boolean".equals(granularity) || "count".equals(granularity);
+    }
+
+    /**
+     * Get the granularity to ask the beacon for.
+     * 
+     * The beacon is asked for the requested granularity, unless it declares 
+     * a coarser default granularity in its configuration and the request is
+     * not authorized (or the beacon has no access levels above the public one)
+     * - the beacon can not provide more details anyway.
+     * 
+     * @param beaconId the beacon identifier
+     * @param query beacon network query
+     * @param authorized whether the request has the authorization
+     * 
+     * @return the granularity for the beacon or null if it is the requested one
+     */
+    private String getGranularity(String beaconId, BeaconRequestQuery query, 
+            boolean authorized) {
+        final String requested = query == null ? null : query.getRequestedGranularity();
+        final int requested_rank = BeaconCapabilities.GRANULARITIES.indexOf(requested);
+        if (requested_rank > 0) {
+            final int rank = capabilities.getGranularity(beaconId, authorized);
+            if (rank < requested_rank) {
+                return BeaconCapabilities.GRANULARITIES.get(rank);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether beacons' results may be passed to the client as they are.
+     * Results are never inspected for the record level granularity.
+     * 
+     * @param query beacon network query
+     * 
+     * @return true if the results should be kept as raw json
+     */
+    private boolean isPassthrough(BeaconRequestQuery query) {
+        if (ConfigurationProperties.BN_RESULTS_PASSTHROUGH_PROPERTY) {
+            final String granularity = query == null ? null : query.getRequestedGranularity();
+            return granularity == null || "record".equals(granularity);
+        }
+        return false;
+    }
+
+    /**
+     * Get the maximum response size allowed for the beacon.
+     * The size may be defined for the beacon in the beacon network configuration
+     * ('maxResponseSize'), otherwise the BEACON_NETWORK_MAX_RESPONSE_SIZE is used.
+     * 
+     * @param beaconId the beacon identifier
+     * 
+     * @return maximum response size in bytes (0 - no limit)
+     */
+    private long getMaxResponseSize(String beaconId) {
+        final JsonObject settings = config.getSettings(beaconId);
+        if (settings != null && 
+            settings.get("maxResponseSize") instanceof JsonNumber size) {
+            return size.longValue();
+        }
+        return ConfigurationProperties.BN_MAX_RESPONSE_SIZE_PROPERTY;
+    }
+
+    private List<BeaconResponseAccumulator> getResultsets(
+            List<CompletableFuture<BeaconResponseAccumulator>> accumulators) {
+
+        final List<BeaconResponseAccumulator> responses = new ArrayList();
+        
+        for (CompletableFuture<BeaconResponseAccumulator> accumulator : accumulators) {
             
             try {
-                final HttpResponse<AbstractBeaconResponse> response = 
-                        invocation.get(ConfigurationProperties.BN_DISCARD_REQUEST_TIMEOUT_PROPERTY, TimeUnit.SECONDS);
-                if (response != null) {
-                    if (response.body() != null) {
-                        responses.add(response.body());
-                    }
-                    log(response);
-                }
+                responses.add(accumulator.get(ConfigurationProperties.BN_DISCARD_REQUEST_TIMEOUT_PROPERTY, TimeUnit.SECONDS));
             } catch (TimeoutException ex) {
                 Logger.getLogger(BeaconNetworkResponseBuilder.class.getName()).log(
                             Level.INFO, ex.getMessage());
@@ -195,22 +815,60 @@ public class BeaconNetworkAggregator {
         return responses;
     }
 
-    private Builder getInvocation(String endpoint, HttpServletRequest request) {
-        
-        final String[] src = request.getPathInfo().split("/");
-        final StringBuilder path = new StringBuilder(endpoint);
-        for (int i = src.length - 1, idx1, idx2 = path.length(); i > 0 && idx2 >= 0; idx2 = idx1, i--) {
-            idx1 = path.lastIndexOf("/", idx2 - 1);
-            if (path.charAt(idx1 + 1) == '{' && path.charAt(idx2 - 1) == '}') {
-                path.replace(idx1 + 1, idx2, src[i]);
+    /**
+     * Account the beacon's raw results kept on the heap and spill them when
+     * the BEACON_NETWORK_SPILL_THRESHOLD is exceeded.
+     * 
+     * @param response the beacon's response
+     * @param size the size of raw results kept on the heap
+     */
+    private void retain(AbstractBeaconResponse response, AtomicLong size) {
+        if (ConfigurationProperties.BN_SPILL_THRESHOLD_PROPERTY > 0) {
+            if (size.addAndGet(RawResultsSpill.size(response)) > 
+                    ConfigurationProperties.BN_SPILL_THRESHOLD_PROPERTY) {
+                size.addAndGet(-spill(response));
             }
         }
+    }
+
+    /**
+     * Move the beacon's raw results off the heap.
+     * 
+     * @param response the beacon's response
+     * 
+     * @return the size of the results moved off the heap
+     */
+    private long spill(AbstractBeaconResponse response) {
+        final long size = RawResultsSpill.size(response);
+        try {
+            RawResultsSpill.spill(response);
+            return size - RawResultsSpill.size(response);
+        } catch (IOException ex) {
+            Logger.getLogger(BeaconNetworkAggregator.class.getName()).log(
+                    Level.WARNING, "error spilling results {0}", ex.getMessage());
+        }
+        return 0;
+    }
+
+    private Builder getInvocation(String endpoint, HttpServletRequest request, 
+            Pagination pagination, String granularity) {
         
-        Builder builder = HttpRequest.newBuilder(UriBuilder.fromUri(path.toString())
-                .replaceQuery(request.getQueryString()).build())
-                .header(HttpHeaders.USER_AGENT, "BN/2.0.0")
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
-                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+        final UrlTemplate template = definitions.getTemplate(endpoint);
+        final URI uri;
+        if (HttpMethod.GET.equals(request.getMethod()) && (pagination != null || granularity != null)) {
+            uri = template.expand(request.getPathInfo(), request.getQueryString(), 
+                    BeaconNetworkRequestAnalyzer.CURSOR_PARAMETER, null,
+                    pagination == null ? null : "skip", 
+                    pagination == null ? null : String.valueOf(pagination.getSkip()),
+                    pagination == null ? null : "limit", 
+                    pagination == null ? null : String.valueOf(pagination.getLimit()),
+                    granularity == null ? null : "requestedGranularity", granularity);
+        } else {
+            uri = template.expand(request.getPathInfo(), request.getQueryString(), 
+                    BeaconNetworkRequestAnalyzer.CURSOR_PARAMETER, null);
+        }
+
+        final Builder builder = HttpRequest.newBuilder(uri).headers(HEADERS);
         
         final Enumeration<String> authorization = request.getHeaders(HttpHeaders.AUTHORIZATION);
         if (authorization != null && authorization.hasMoreElements()) {
@@ -236,6 +894,10 @@ public class BeaconNetworkAggregator {
 
     private void log(HttpRequest request, int code, String message) {
         
+        if (!BeaconLogLevel.LEVEL.logs(BeaconLogEntity.REQUEST_TYPE.QUERY)) {
+            return;
+        }
+
         final BeaconLogEntity.METHOD method = BeaconLogEntity.METHOD.valueOf(request.method());
         
         final BeaconResponseProcessor publisher = 
@@ -244,8 +906,15 @@ public class BeaconNetworkAggregator {
         final String req = publisher.req.length == 0 ? null : 
                 new String(publisher.req, StandardCharsets.UTF_8);
         
-        final String res = publisher.res == null ? null :
-                new String(publisher.res, StandardCharsets.UTF_8);
+        String res = null;
+        if (publisher.res != null &&
+            BeaconLogLevel.LEVEL.logsResponses(BeaconLogEntity.REQUEST_TYPE.QUERY)) {
+            // errors are logged in full, other responses are truncated
+            res = code >= 300 || message != null 
+                    ? publisher.res.toString(StandardCharsets.UTF_8)
+                    : publisher.res.toString(StandardCharsets.UTF_8, 
+                            ConfigurationProperties.BN_LOG_PAYLOAD_LIMIT_PROPERTY);
+        }
         
         final BeaconLogEntity log_entry = new BeaconLogEntity(publisher.xid, 
                 BeaconLogEntity.REQUEST_TYPE.QUERY, method, request.uri().toString(), 
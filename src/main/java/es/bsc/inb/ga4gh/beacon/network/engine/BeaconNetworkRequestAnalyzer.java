@@ -26,17 +26,35 @@
 package es.bsc.inb.ga4gh.beacon.network.engine;
 
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.Pagination;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.SchemaPerEntity;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestBody;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestMeta;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestQuery;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
 import jakarta.json.bind.Jsonb;
 import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.HttpHeaders;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,6 +65,13 @@ import java.util.logging.Logger;
 @ApplicationScoped
 public class BeaconNetworkRequestAnalyzer {
     
+    public final static String CURSOR_PARAMETER = "cursor";
+
+    // GET parameters which are not the request parameters
+    private final static Set<String> RESERVED_PARAMETERS = Set.of(
+            "skip", "limit", CURSOR_PARAMETER, "requestedGranularity", 
+            "filters", "testMode", "includeResultsetResponses", "datasets");
+    
     @Inject
     private Jsonb jsonb;
 
@@ -79,6 +104,7 @@ public class BeaconNetworkRequestAnalyzer {
         final BeaconRequestQuery query = new BeaconRequestQuery();
         
         query.setIncludeResultsetResponses("ALL");
+        query.setRequestedGranularity(request.getParameter("requestedGranularity"));
         
         final String skip = request.getParameter("skip");
         final String limit = request.getParameter("limit");
@@ -92,7 +118,7 @@ public class BeaconNetworkRequestAnalyzer {
 
             Integer int_limit;
             try {
-                int_limit = Integer.valueOf(skip);
+                int_limit = Integer.valueOf(limit);
             } catch(NumberFormatException ex) {
                 int_limit = null;
             }
@@ -102,6 +128,262 @@ public class BeaconNetworkRequestAnalyzer {
         return query;
     }
 
+    /**
+     * Get the canonical query of the request.
+     * 
+     * For the GET request the query is taken from the query string, 
+     * otherwise from the POST content. Datasets may be defined either in
+     * the 'datasets' query parameter (comma separated) or in the 
+     * 'datasets.datasetIds' of the POST content or its 'query.requestParameters'.
+     * 
+     * @param request the client's request
+     * @param content POST content
+     * @param query the parsed beacon query (may be null)
+     * @param endpoint the matched endpoint (Entry&lt;'entryType', 'url'&gt;) or null
+     * 
+     * @return the canonical query
+     */
+    public CanonicalQuery getCanonicalQuery(HttpServletRequest request, byte[] content, 
+            BeaconRequestQuery query, Map.Entry<String, String> endpoint) {
+
+        final List<String> filters = new ArrayList();
+        final List<String> filter_ids = new ArrayList();
+        final List<String> descendant_ids = new ArrayList();
+        final List<String> dataset_ids = new ArrayList();
+        JsonObject request_parameters = JsonValue.EMPTY_JSON_OBJECT;
+        Boolean test_mode = query == null ? null : query.getTestMode();
+
+        if (content.length == 0) {
+            final JsonObjectBuilder parameters = Json.createObjectBuilder();
+            request.getParameterMap().forEach((name, values) -> {
+                if (values.length == 1 && !RESERVED_PARAMETERS.contains(name)) {
+                    parameters.add(name, values[0]);
+                } else if (values.length > 1 && !RESERVED_PARAMETERS.contains(name)) {
+                    // repeated parameter: all the values in the same order
+                    parameters.add(name, Json.createArrayBuilder(
+                            Arrays.stream(values).sorted().toList()));
+                }
+            });
+            request_parameters = parameters.build();
+            
+            split(request.getParameterValues("filters"), filters);
+            filter_ids.addAll(filters);
+            descendant_ids.addAll(filters);
+            split(request.getParameterValues("datasets"), dataset_ids);
+            
+            final String mode = request.getParameter("testMode");
+            if (test_mode == null && mode != null) {
+                test_mode = Boolean.valueOf(mode);
+            }
+        } else {
+            try (JsonReader reader = Json.createReader(new ByteArrayInputStream(content))) {
+                final JsonObject body = reader.readObject();
+                JsonValue datasets = body.get("datasets");
+                if (body.get("query") instanceof JsonObject q) {
+                    if (q.get("requestParameters") instanceof JsonObject parameters) {
+                        request_parameters = parameters;
+                        if (datasets == null) {
+                            datasets = parameters.get("datasets");
+                        }
+                    }
+                    if (q.get("filters") instanceof JsonArray array) {
+                        for (JsonValue filter : array) {
+                            filters.add(CanonicalQuery.canonicalFilter(filter));
+                            if (filter instanceof JsonString id) {
+                                filter_ids.add(id.getString());
+                                descendant_ids.add(id.getString());
+                            } else if (filter instanceof JsonObject obj && 
+                                       obj.get("id") instanceof JsonString id) {
+                                filter_ids.add(id.getString());
+                                // ontology filters include descendant terms by default
+                                if (!obj.containsKey("operator") && !obj.containsKey("value") &&
+                                    !JsonValue.FALSE.equals(obj.get("includeDescendantTerms"))) {
+                                    descendant_ids.add(id.getString());
+                                }
+                            }
+                        }
+                    }
+                }
+                if (datasets instanceof JsonObject obj && 
+                    obj.get("datasetIds") instanceof JsonArray ids) {
+                    for (JsonValue id : ids) {
+                        if (id instanceof JsonString str) {
+                            dataset_ids.add(str.getString());
+                        }
+                    }
+                }
+            } catch (Exception ex) {
+                Logger.getLogger(BeaconNetworkRequestAnalyzer.class.getName())
+                        .log(Level.INFO, "error parsing request query", ex);
+            }
+        }
+
+        final Pagination pagination = query == null ? null : query.getPagination();
+
+        return new CanonicalQuery(
+                endpoint == null ? null : endpoint.getKey(),
+                endpoint == null ? List.of() : getPathParameters(request.getPathInfo(), endpoint.getValue()),
+                filters, filter_ids, descendant_ids,
+                query == null ? null : query.getRequestedGranularity(),
+                pagination == null ? null : pagination.getSkip(),
+                pagination == null ? null : pagination.getLimit(),
+                test_mode, request_parameters, dataset_ids);
+    }
+
+    /**
+     * Get the values of the template parameters ('{id}') from the request path.
+     * The path segments are aligned with the template ones from the end.
+     * 
+     * @param path_info the client's request path
+     * @param template the matched endpoint template
+     * 
+     * @return the parameters' values
+     */
+    private List<String> getPathParameters(String path_info, String template) {
+        if (path_info == null || template.indexOf('{') < 0) {
+            return List.of();
+        }
+        final List<String> parameters = new ArrayList();
+        final String[] src = path_info.split("/");
+        final String[] names = template.split("/");
+        for (int i = src.length - 1, j = names.length - 1; i > 0 && j > 0; i--, j--) {
+            if (names[j].startsWith("{") && names[j].endsWith("}")) {
+                parameters.add(0, src[i]);
+            }
+        }
+        return parameters;
+    }
+
+    private void split(String[] parameters, List<String> values) {
+        if (parameters != null) {
+            for (String value : parameters) {
+                for (String v : value.split(",")) {
+                    if (!v.isBlank()) {
+                        values.add(v.trim());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the digest of the request results scope: the canonical query, 
+     * the page cursor, the included responses, the requested api version and
+     * schemas and the client's authorization.
+     * Requests with the same digest get the same beacons' responses.
+     * 
+     * @param request the client's request
+     * @param meta beacon network request metadata
+     * @param query beacon network query
+     * @param canonical the canonical query
+     * 
+     * @return the digest to be completed or null if there is no digest algorithm
+     */
+    public MessageDigest getScopeDigest(HttpServletRequest request, 
+            BeaconRequestMeta meta, BeaconRequestQuery query, CanonicalQuery canonical) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, canonical.getFingerprint());
+            update(digest, request.getParameter(CURSOR_PARAMETER));
+            update(digest, query == null ? null : query.getIncludeResultsetResponses());
+            if (meta != null) {
+                update(digest, meta.getApiVersion());
+                final List<SchemaPerEntity> schemas = meta.getRequestedSchemas();
+                if (schemas != null) {
+                    for (SchemaPerEntity schema : schemas) {
+                        update(digest, schema.getEntityType());
+                        update(digest, schema.getSchema());
+                    }
+                }
+            }
+            final Enumeration<String> authorization = request.getHeaders(HttpHeaders.AUTHORIZATION);
+            while (authorization != null && authorization.hasMoreElements()) {
+                update(digest, authorization.nextElement());
+            }
+            return digest;
+        } catch (NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Update the digest with the (null terminated) value.
+     * 
+     * @param digest the digest to update
+     * @param value the value or null
+     */
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte)0);
+    }
+
+    /**
+     * Get the network pagination cursor passed as the 'cursor' query parameter.
+     * 
+     * @param request
+     * @return the cursor or null
+     */
+    public PaginationCursor getCursor(HttpServletRequest request) {
+        return PaginationCursor.decode(request.getParameter(CURSOR_PARAMETER));
+    }
+
+    /**
+     * Parse the POST content as json object.
+     * 
+     * @param content POST content
+     * 
+     * @return the parsed content or null if it is not a json object
+     */
+    public JsonObject getBody(byte[] content) {
+        try (JsonReader reader = Json.createReader(new ByteArrayInputStream(content))) {
+            return reader.readObject();
+        } catch (Exception ex) {
+            Logger.getLogger(BeaconNetworkRequestAnalyzer.class.getName())
+                    .log(Level.INFO, "error parsing request content", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Set the query parameters of the POST request to be sent to the beacon.
+     * 
+     * @param content original POST content
+     * @param body the parsed POST content (may be null)
+     * @param pagination the pagination for the beacon or null to keep the original one
+     * @param granularity the granularity for the beacon or null to keep the original one
+     * 
+     * @return POST content with the query parameters
+     */
+    public byte[] setQuery(byte[] content, JsonObject body, Pagination pagination, String granularity) {
+        if (body == null) {
+            return content;
+        }
+        try {
+            final JsonObject query = body.get("query") instanceof JsonObject q 
+                    ? q : JsonValue.EMPTY_JSON_OBJECT;
+            final JsonObjectBuilder query_builder = Json.createObjectBuilder(query);
+            if (pagination != null) {
+                final JsonObject original = query.get("pagination") instanceof JsonObject p 
+                        ? p : JsonValue.EMPTY_JSON_OBJECT;
+                query_builder.add("pagination", Json.createObjectBuilder(original)
+                            .add("skip", pagination.getSkip())
+                            .add("limit", pagination.getLimit()));
+            }
+            if (granularity != null) {
+                query_builder.add("requestedGranularity", granularity);
+            }
+            return Json.createObjectBuilder(body)
+                    .add("query", query_builder)
+                    .build().toString().getBytes(StandardCharsets.UTF_8);
+        } catch (Exception ex) {
+            Logger.getLogger(BeaconNetworkRequestAnalyzer.class.getName())
+                    .log(Level.INFO, "error setting request query", ex);
+        }
+        return content;
+    }
+
     public byte[] getContent(HttpServletRequest request) {
         try {
             final ServletInputStream in = request.getInputStream();
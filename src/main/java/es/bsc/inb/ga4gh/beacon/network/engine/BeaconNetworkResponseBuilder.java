@@ -25,8 +25,9 @@
 
 package es.bsc.inb.ga4gh.beacon.network.engine;
 
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.Handover;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.Pagination;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.SchemaPerEntity;
-import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconQueryFilterGroupInterface;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestMeta;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestQuery;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.AbstractBeaconResponse;
@@ -42,17 +43,19 @@ import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponseSumm
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsets;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsetsResponse;
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
 import es.bsc.inb.ga4gh.beacon.network.info.BeaconInfoProducer;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
+import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 import jakarta.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Dmitry Repchevsky
@@ -64,102 +67,251 @@ public class BeaconNetworkResponseBuilder {
     @Inject
     private BeaconInfoProducer beacon_info;
     
+    /**
+     * Build the beacon network response combining (in parallel) the accumulated
+     * beacons' responses.
+     * 
+     * @param meta beacon network request metadata
+     * @param query beacon network request query
+     * @param canonical the canonical query
+     * @param page the network results page or null if not paginated
+     * @param accumulators accumulated beacons' responses
+     * 
+     * @return the aggregated beacon network response
+     */
     public Response build(
             BeaconRequestMeta meta, 
-            BeaconRequestQuery query, 
-            List<AbstractBeaconResponse> beacons_responses) {
+            BeaconRequestQuery query,
+            CanonicalQuery canonical,
+            ResultsPage page,
+            List<BeaconResponseAccumulator> accumulators) {
+        
+        return respond(combine(meta, query, canonical, page, accumulators));
+    }
 
-        final String include_resultset_responses = query.getIncludeResultsetResponses();
+    /**
+     * Combine (in parallel) the accumulated beacons' responses into the 
+     * beacon network response entity.
+     * 
+     * @param meta beacon network request metadata
+     * @param query beacon network request query
+     * @param canonical the canonical query
+     * @param page the network results page or null if not paginated
+     * @param accumulators accumulated beacons' responses
+     * 
+     * @return the aggregated beacon network response entity
+     */
+    public BeaconResponse combine(
+            BeaconRequestMeta meta, 
+            BeaconRequestQuery query,
+            CanonicalQuery canonical,
+            ResultsPage page,
+            List<BeaconResponseAccumulator> accumulators) {
+
+        final BeaconResponseAccumulator accumulator = accumulators.parallelStream()
+                .collect(BeaconResponseAccumulator::new, 
+                         BeaconResponseAccumulator::combine, 
+                         BeaconResponseAccumulator::combine);
 
-        AbstractBeaconResponse aggregated;
+        final BeaconResponse aggregated;
+        PaginationCursor next_page = null;
         
-        if (beacons_responses.stream().anyMatch(BeaconCollectionsResponse.class::isInstance)) {
+        if (accumulator.hasCollections()) {
             final BeaconCollectionsResponse response = new BeaconCollectionsResponse();
-            response.setMeta(new BeaconResponseMeta());
-            response.setResponseSummary(new BeaconResponseSummary(false));
-            
-            for (AbstractBeaconResponse beacon_response : beacons_responses) {
-                if (beacon_response instanceof BeaconCollectionsResponse res) {
-                    if (checkIncludeResponse(include_resultset_responses, res)) {
-                        mergeMeta(response, res);
-                        mergeCollections(response, res);
-                        mergeSummary(response, res);
-                    }
-                }
+            final List collections = accumulator.getCollections();
+            if (!collections.isEmpty()) {
+                final BeaconCollections beacon_collections = new BeaconCollections();
+                beacon_collections.setCollections(collections);
+                response.setResponse(beacon_collections);
             }
             aggregated = response;
         } else {
             final BeaconResultsetsResponse response = new BeaconResultsetsResponse();
             final BeaconResultsets resultsets = new BeaconResultsets();
-            
-            response.setResponse(resultsets);
-            response.setMeta(new BeaconResponseMeta());
-            response.setResponseSummary(new BeaconResponseSummary(false));
-          
-            for (AbstractBeaconResponse beacon_response : beacons_responses) {
-                if (beacon_response instanceof BeaconResultsetsResponse res) {
-                    if (checkIncludeResponse(include_resultset_responses, res)) {
-                        mergeMeta(response, res);
-                        mergeResultsets(response, res);
-                        mergeSummary(response, res);
-                    }
-                } else if (beacon_response instanceof BeaconErrorResponse err) {
-                    
-                    if (!"NONE".equals(include_resultset_responses) &&
-                        !"HIT".equals(include_resultset_responses)) {
-                        final BeaconResultset empty = new BeaconResultset();
-                        empty.setExists(false);
-                        BeaconError error = err.getError();
-                        if (error != null) {
-                            JsonObjectBuilder b = Json.createObjectBuilder();
-                            String errorMessage = error.getErrorMessage();
-                            b.add("errorCode", error.getErrorCode());
-                            if (errorMessage != null) {
-                                b.add("errorMessage", error.getErrorMessage());
-                            }
-
-                            empty.setInfo(Json.createObjectBuilder().add("error", b).build());
-                        }
-
-                        final BeaconResponseMeta err_meta = err.getMeta();
-                        if (err_meta != null) {
-                            empty.setBeaconId(err_meta.getBeaconId());
-                        }
-
-                        List<BeaconResultset> list = resultsets.getResultSets();
-                        if (list == null) {
-                            resultsets.setResultSets(list = new ArrayList());
-                        }
-
-                        list.add(empty);
-                    }
-                }
+            final String[] sort_key = ResultsMerger.getSortKey(canonical.getEntryType());
+            if (page != null) {
+                next_page = page.apply(accumulator.getResultsets(), sort_key);
+            } else if (sort_key != null) {
+                final Pagination pagination = query == null ? null : query.getPagination();
+                final Integer limit = pagination == null ? null : pagination.getLimit();
+                ResultsMerger.merge(accumulator.getResultsets(), sort_key, limit == null ? 0 : limit);
             }
+            if (ResultsDeduplicator.ID_MODE.equals(ConfigurationProperties.BN_RESULTS_DEDUP_PROPERTY) ||
+                ResultsDeduplicator.CONTENT_MODE.equals(ConfigurationProperties.BN_RESULTS_DEDUP_PROPERTY)) {
+                ResultsDeduplicator.deduplicate(accumulator.getResultsets(), 
+                        ConfigurationProperties.BN_RESULTS_DEDUP_PROPERTY);
+            }
+            resultsets.setResultSets((List)accumulator.getResultsets());
+            response.setResponse(resultsets);
             aggregated = response;
         }
 
-        final BeaconResponseMeta beacon_network_response_meta = this.getMeta(meta, query);
+        aggregated.setResponseSummary(accumulator.getResponseSummary());
+
+        final List<String> not_queried = accumulator.getNotQueried();
+        if (next_page != null || !not_queried.isEmpty()) {
+            final JsonObjectBuilder info = Json.createObjectBuilder();
+            if (next_page != null) {
+                info.add("nextPage", next_page.encode());
+            }
+            if (!not_queried.isEmpty()) {
+                info.add("notQueried", Json.createArrayBuilder(not_queried));
+            }
+            aggregated.setInfo(info.build());
+        }
+
+        final List<Handover> handovers = accumulator.getBeaconHandovers();
+        if (!handovers.isEmpty()) {
+            aggregated.setBeaconHandovers(handovers);
+        }
+
+        final BeaconResponseMeta beacon_network_response_meta = this.getMeta(meta, query, canonical);
+        final List<SchemaPerEntity> schemas = accumulator.getReturnedSchemas();
+        if (!schemas.isEmpty()) {
+            beacon_network_response_meta.setReturnedSchemas(schemas);
+        }
         aggregated.setMeta(beacon_network_response_meta);
+        
+        return aggregated;
+    }
+
+    /**
+     * Get the copy of the aggregated entity with the metadata of another request.
+     * The aggregated entity is not modified.
+     * 
+     * @param aggregated the aggregated beacon network response entity
+     * @param meta beacon network request metadata
+     * @param query beacon network request query
+     * @param canonical the canonical query
+     * 
+     * @return the aggregated beacon network response entity for the request
+     */
+    public BeaconResponse withMeta(
+            BeaconResponse aggregated,
+            BeaconRequestMeta meta, 
+            BeaconRequestQuery query,
+            CanonicalQuery canonical) {
+
+        final BeaconResponse response;
+        if (aggregated instanceof BeaconCollectionsResponse res) {
+            final BeaconCollectionsResponse copy = new BeaconCollectionsResponse();
+            copy.setResponse(res.getResponse());
+            response = copy;
+        } else if (aggregated instanceof BeaconResultsetsResponse res) {
+            final BeaconResultsetsResponse copy = new BeaconResultsetsResponse();
+            copy.setResponse(res.getResponse());
+            response = copy;
+        } else {
+            return aggregated;
+        }
+        response.setResponseSummary(aggregated.getResponseSummary());
+        response.setInfo(aggregated.getInfo());
+        response.setBeaconHandovers(aggregated.getBeaconHandovers());
+
+        final BeaconResponseMeta beacon_network_response_meta = this.getMeta(meta, query, canonical);
+        if (aggregated.getMeta() != null) {
+            beacon_network_response_meta.setReturnedSchemas(aggregated.getMeta().getReturnedSchemas());
+        }
+        response.setMeta(beacon_network_response_meta);
+
+        return response;
+    }
+
+    /**
+     * Create the response for the aggregated entity.
+     * The entity is not modified, so the same entity may be returned many times.
+     * 
+     * @param aggregated the aggregated beacon network response entity
+     * 
+     * @return the response
+     */
+    public Response respond(BeaconResponse aggregated) {
+        if (aggregated instanceof BeaconResultsetsResponse response &&
+            RawResultsetsResponseWriter.hasRawResults(response)) {
+            return Response.ok(new RawResultsetsResponseWriter(response)).build();
+        }
         return Response.ok(aggregated).build();
     }
-    
+
     /**
-     * Merge beacon response into the beacon network response object.
+     * Accumulate the beacon's response into its own accumulator.
+     * This is done as soon as the response is received, so the aggregation
+     * work is spread over the time the beacons are being waited for.
      * 
-     * @param target Beacon Network aggregated response object
-     * @param source Beacon response object to aggregate
+     * @param include_resultset_responses the 'includeResultsetResponses' query parameter
+     * @param beacon_response the beacon's response (may be null)
+     * 
+     * @return the accumulator with the beacon's response
      */
-    private void mergeResultsets(BeaconResultsetsResponse target, BeaconResultsetsResponse source) {
-        final String beacon_id = source.getMeta() == null ? null 
-                : source.getMeta().getBeaconId();
+    public BeaconResponseAccumulator accumulate(
+            String include_resultset_responses, 
+            AbstractBeaconResponse beacon_response) {
         
-        BeaconResultsets target_response = target.getResponse();
-
-        List<BeaconResultset> target_resultsets = target_response.getResultSets();
-        if (target_resultsets == null) {
-            target_response.setResultSets((List)(target_resultsets = new ArrayList()));
+        final BeaconResponseAccumulator accumulator = new BeaconResponseAccumulator();
+        
+        if (beacon_response instanceof BeaconCollectionsResponse res) {
+            accumulator.setCollections(true);
+            if (checkIncludeResponse(include_resultset_responses, res)) {
+                accumulateMeta(accumulator, res);
+                final BeaconCollections collections = res.getResponse();
+                if (collections != null && collections.getCollections() != null) {
+                    accumulator.addCollections(collections.getCollections());
+                }
+                accumulator.addSummary(res.getResponseSummary());
+            }
+        } else if (beacon_response instanceof BeaconResultsetsResponse res) {
+            if (checkIncludeResponse(include_resultset_responses, res)) {
+                accumulateMeta(accumulator, res);
+                accumulator.addResultsets(getResultsets(res));
+                accumulator.addSummary(res.getResponseSummary());
+            }
+        } else if (beacon_response instanceof BeaconErrorResponse err) {
+            accumulator.addErrors(1);
+            if (!"NONE".equals(include_resultset_responses) &&
+                !"HIT".equals(include_resultset_responses)) {
+                accumulator.addResultsets(List.of(createErrorResultset(err)));
+            }
+        } else if (beacon_response == null) {
+            accumulator.addErrors(1);
         }
 
+        return accumulator;
+    }
+
+    /**
+     * Stream the beacon network response to the client as beacons respond.
+     * 
+     * @param meta beacon network request metadata
+     * @param query beacon network request query
+     * @param canonical the canonical query
+     * @param not_queried the beacons which are not queried
+     * @param beacons_responses beacons' responses as they are completed
+     * 
+     * @return the response which entity writes resultsets progressively
+     */
+    public Response stream(
+            BeaconRequestMeta meta, 
+            BeaconRequestQuery query, 
+            CanonicalQuery canonical,
+            List<String> not_queried,
+            List<CompletableFuture<AbstractBeaconResponse>> beacons_responses) {
+        
+        return Response.ok(new ProgressiveResponseWriter(this, getMeta(meta, query, canonical),
+                query == null ? null : query.getIncludeResultsetResponses(), 
+                not_queried, beacons_responses)).build();
+    }
+
+    /**
+     * Get the resultsets of the beacon response marked with the beacon id.
+     * 
+     * @param source Beacon response object
+     * 
+     * @return the resultsets to be included into the aggregated response
+     */
+    List<BeaconResultset> getResultsets(BeaconResultsetsResponse source) {
+        final String beacon_id = source.getMeta() == null ? null 
+                : source.getMeta().getBeaconId();
+
         BeaconResultsets source_response = source.getResponse();
         if (source_response != null) {
             List<BeaconResultset> source_resultsets = source_response.getResultSets();
@@ -168,8 +320,7 @@ public class BeaconNetworkResponseBuilder {
                 source_resultsets.stream()
                         .filter(rs -> Objects.isNull(rs.getBeaconId()))
                         .forEach(rs -> rs.setBeaconId(beacon_id));
-                target_resultsets.addAll(source_resultsets);
-                return;
+                return source_resultsets;
             }
         }
 
@@ -185,82 +336,75 @@ public class BeaconNetworkResponseBuilder {
             result_set.setResultsCount(summary.getNumTotalResults());
         }
 
-        target_resultsets.add(result_set);
+        return List.of(result_set);
     }
-    
-    private void mergeCollections(BeaconCollectionsResponse target, BeaconCollectionsResponse source) {
-        final BeaconCollections source_response = source.getResponse();
-        if (source_response != null) {
-            final List source_collections = source_response.getCollections();
-            if (source_collections != null && !source_collections.isEmpty()) {
-                BeaconCollections target_response = target.getResponse();
-                if (target_response == null) {
-                    target.setResponse(target_response = new BeaconCollections());
-                }
-                final List target_collections = target_response.getCollections();
-                if (target_collections != null) {
-                    target_collections.addAll(source_collections);
-                } else {
-                    target_response.setCollections(new ArrayList(source_collections));
-                }             
-            }
-        }
+
+    /**
+     * Check whether the resultset reports the beacon error.
+     * 
+     * @param resultset the resultset
+     * 
+     * @return true if the resultset was created by the createErrorResultset()
+     */
+    static boolean isErrorResultset(BeaconResultset resultset) {
+        return resultset.getResults() == null && resultset.getInfo() != null &&
+               resultset.getInfo().get("error") instanceof JsonObject;
     }
 
     /**
-     * Merge beacon metadata into the beacon network metadata object.
+     * Create an empty resultset which reports the beacon error.
      * 
-     * @param target Beacon Network aggregated response object
-     * @param source Beacon response object to aggregate
+     * @param err Beacon error response
+     * 
+     * @return the resultset with the error in its 'info'
      */
-    private void mergeMeta(AbstractBeaconResponse target, AbstractBeaconResponse source) {
-        final BeaconResponseMeta source_meta = source.getMeta();
-        if (source_meta != null) {
-            final BeaconResponseMeta target_meta = target.getMeta();
-            
-            final List<SchemaPerEntity> source_schemas = source_meta.getReturnedSchemas();
-            if (source_schemas != null && !source_schemas.isEmpty()) {
-                final List<SchemaPerEntity> target_schemas = target_meta.getReturnedSchemas();
-                if (target_schemas != null) {
-                    target_schemas.addAll(source_schemas);
-                } else {
-                    target_meta.setReturnedSchemas(new ArrayList(source_schemas));
-                }
+    BeaconResultset createErrorResultset(BeaconErrorResponse err) {
+        final BeaconResultset empty = new BeaconResultset();
+        empty.setExists(false);
+        JsonObjectBuilder b = Json.createObjectBuilder();
+        BeaconError error = err.getError();
+        if (error != null) {
+            String errorMessage = error.getErrorMessage();
+            b.add("errorCode", error.getErrorCode());
+            if (errorMessage != null) {
+                b.add("errorMessage", error.getErrorMessage());
             }
+        }
+        empty.setInfo(Json.createObjectBuilder().add("error", b).build());
 
-            final BeaconReceivedRequestSummary source_request_summary = source_meta.getReceivedRequestSummary();
-            if (source_request_summary != null) {
-            }
+        final BeaconResponseMeta err_meta = err.getMeta();
+        if (err_meta != null) {
+            empty.setBeaconId(err_meta.getBeaconId());
         }
-    }
 
+        return empty;
+    }
+    
     /**
-     * Merge beacon metadata into the beacon network metadata object.
+     * Accumulate beacon metadata and handovers.
      * 
-     * @param target Beacon Network aggregated response object
+     * @param accumulator the accumulator of the beacon response
      * @param source Beacon response object to aggregate
      */
-    private void mergeSummary(BeaconResponse target, BeaconResponse source) {
-        final BeaconResponseSummary source_summary = source.getResponseSummary();
-        if (source_summary != null) {
-            final Integer source_total = source_summary.getNumTotalResults();
-            if (source_total != null && source_total > 0) {
-                final BeaconResponseSummary target_summary = target.getResponseSummary();
-                target_summary.setExists(true);
-                
-                final Integer target_total = target_summary.getNumTotalResults();
-                if (target_total == null) {
-                    target_summary.setNumTotalResults(source_total);
-                } else {
-                    target_summary.setNumTotalResults(target_total + source_total);
-                }
+    private void accumulateMeta(BeaconResponseAccumulator accumulator, BeaconResponse source) {
+        final BeaconResponseMeta source_meta = source.getMeta();
+        if (source_meta != null) {
+            final List<SchemaPerEntity> source_schemas = source_meta.getReturnedSchemas();
+            if (source_schemas != null) {
+                accumulator.addReturnedSchemas(source_schemas);
             }
         }
+        
+        final List<Handover> source_handovers = source.getBeaconHandovers();
+        if (source_handovers != null) {
+            accumulator.addBeaconHandovers(source_handovers);
+        }
     }
     
     protected BeaconResponseMeta getMeta(
             BeaconRequestMeta request_meta, 
-            BeaconRequestQuery request_query) {
+            BeaconRequestQuery request_query,
+            CanonicalQuery canonical) {
         
         final BeaconResponseMeta response_meta = new BeaconResponseMeta();
 
@@ -275,18 +419,13 @@ public class BeaconNetworkResponseBuilder {
         if (request_query != null) {
             request_summary.setPagination(request_query.getPagination());
             request_summary.setBeaconRequestParameters(request_query.getRequestParameters());
-
-            final List<BeaconQueryFilterGroupInterface> filters = request_query.getFilters();
-            if (filters != null) {
-                request_summary.setFilters(filters.stream()
-                        .filter(Objects::nonNull)
-                        .map(BeaconQueryFilterGroupInterface::toString)
-                        .collect(Collectors.toList()));
-            }
-
             request_summary.setRequestedGranularity(request_query.getRequestedGranularity());
             request_summary.setTestMode(request_query.getTestMode());
         }
+
+        if (canonical != null && !canonical.getFilters().isEmpty()) {
+            request_summary.setFilters(canonical.getFilters());
+        }
         
         final BeaconInformationalResponseMeta meta = beacon_info.beaconInfo().getMeta();
         if (request_summary.getApiVersion() == null) {
@@ -304,7 +443,7 @@ public class BeaconNetworkResponseBuilder {
         }
         
         if (request_summary.getPagination() == null) {
-            request_summary.setPagination(new es.bsc.inb.ga4gh.beacon.framework.model.v200.common.Pagination());
+            request_summary.setPagination(new Pagination());
         }
 
         response_meta.setReceivedRequestSummary(request_summary);
@@ -323,7 +462,7 @@ public class BeaconNetworkResponseBuilder {
         return response_meta;
     }
     
-    private boolean checkIncludeResponse(String include_resultset_responses, BeaconResponse response) {
+    boolean checkIncludeResponse(String include_resultset_responses, BeaconResponse response) {
         if ("ALL".equals(include_resultset_responses)) {
             return true;
         }
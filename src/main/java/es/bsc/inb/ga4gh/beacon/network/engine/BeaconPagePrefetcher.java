@@ -0,0 +1,228 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Short-lived cache of the speculatively fetched next pages.
+ * 
+ * After the page is returned to the client, the next one is fetched in the
+ * background and kept for BEACON_NETWORK_PREFETCH_TTL seconds. Pages are 
+ * keyed by the client's request (including its authorization) and the page 
+ * cursor. Prefetching is skipped when the number of concurrent aggregations 
+ * exceeds BEACON_NETWORK_PREFETCH_MAX_LOAD and for the requests which 
+ * prefetched pages were repeatedly never asked for.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class BeaconPagePrefetcher {
+    
+    private final static int MAX_PAGES = 256;
+    private final static int MAX_PREFETCHING = 4;
+    private final static int MAX_WASTED = 2;
+
+    /**
+     * The prefetched page with its (possibly not yet completed) beacons' responses.
+     */
+    public record Page(ResultsPage page, List<CompletableFuture<BeaconResponseAccumulator>> accumulators) {}
+    
+    private record Entry(String key, Page page, long expires) {}
+
+    private final Map<String, Entry> pages = new ConcurrentHashMap();
+    
+    // the number of prefetched pages that expired unused for the request
+    private final Map<String, Integer> wasted = Collections.synchronizedMap(
+            new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > 1024;
+                }
+            });
+
+    private final AtomicInteger load = new AtomicInteger();
+    private final AtomicInteger prefetching = new AtomicInteger();
+
+    /**
+     * Register the aggregation being executed.
+     */
+    public void enter() {
+        load.incrementAndGet();
+    }
+
+    public void exit() {
+        load.decrementAndGet();
+    }
+
+    /**
+     * Get the key which identifies the client's request regardless its page.
+     * 
+     * @param request the client's request
+     * @param data the client's request content
+     * 
+     * @return the request key or null if the prefetching is disabled
+     */
+    public String getKey(HttpServletRequest request, byte[] data) {
+        if (!ConfigurationProperties.BN_PREFETCH_PROPERTY) {
+            return null;
+        }
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(request.getRequestURL().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            final String query_string = request.getQueryString();
+            if (query_string != null) {
+                // 'skip' is only used for the first page
+                for (String parameter : query_string.split("&")) {
+                    if (!parameter.startsWith(BeaconNetworkRequestAnalyzer.CURSOR_PARAMETER + "=") &&
+                        !parameter.startsWith("skip=")) {
+                        digest.update(parameter.getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte)'&');
+                    }
+                }
+            }
+            digest.update((byte)0);
+            digest.update(data);
+            final Enumeration<String> authorization = request.getHeaders(HttpHeaders.AUTHORIZATION);
+            while (authorization != null && authorization.hasMoreElements()) {
+                digest.update((byte)0);
+                digest.update(authorization.nextElement().getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Take the prefetched page out of the cache.
+     * 
+     * @param key the request key
+     * @param cursor the page cursor token
+     * 
+     * @return the prefetched page or null
+     */
+    public Page take(String key, String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        evict();
+        final Entry entry = pages.remove(key + '#' + cursor);
+        if (entry == null) {
+            return null;
+        }
+        wasted.remove(key);
+        return entry.page();
+    }
+
+    /**
+     * Check whether the next page for the request should be prefetched.
+     * The admitted request reserves the prefetching slot, which is released
+     * when the page put is fetched (or via release() if nothing is put).
+     * 
+     * @param key the request key
+     * 
+     * @return true if there is a spare capacity and the client is likely to
+     * ask for the next page
+     */
+    public boolean admit(String key) {
+        evict();
+        if (load.get() > ConfigurationProperties.BN_PREFETCH_MAX_LOAD_PROPERTY ||
+            pages.size() >= MAX_PAGES ||
+            wasted.getOrDefault(key, 0) >= MAX_WASTED) {
+            return false;
+        }
+        for (int n = prefetching.get(); n < MAX_PREFETCHING; n = prefetching.get()) {
+            if (prefetching.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Release the prefetching slot reserved by the admit().
+     */
+    public void release() {
+        prefetching.decrementAndGet();
+    }
+
+    /**
+     * Put the page being prefetched into the cache.
+     * The prefetching slot reserved by the admit() is released when all 
+     * the beacons' responses of the page are received.
+     * 
+     * @param key the request key
+     * @param cursor the page cursor token
+     * @param page the prefetched page
+     * @param accumulators beacons' responses of the page
+     */
+    public void put(String key, String cursor, ResultsPage page,
+            List<CompletableFuture<BeaconResponseAccumulator>> accumulators) {
+        
+        CompletableFuture.allOf(accumulators.toArray(CompletableFuture[]::new))
+                .whenComplete((r, ex) -> release());
+        
+        pages.put(key + '#' + cursor, new Entry(key, new Page(page, accumulators), 
+                System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(
+                        ConfigurationProperties.BN_PREFETCH_TTL_PROPERTY)));
+    }
+
+    /**
+     * Remove expired pages counting them as wasted for their requests.
+     */
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        for (Iterator<Entry> iter = pages.values().iterator(); iter.hasNext();) {
+            final Entry entry = iter.next();
+            if (entry.expires() < now) {
+                iter.remove();
+                wasted.merge(entry.key(), 1, Integer::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.Handover;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.SchemaPerEntity;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponseSummary;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mutable container which aggregates beacons' responses.
+ * 
+ * Every beacon's response is accumulated separately as soon as it is received,
+ * then all accumulators are combined (in any grouping) into the beacon network
+ * response. Returned schemas and handovers are deduplicated and the results
+ * are counted as long to avoid the overflow.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class BeaconResponseAccumulator {
+    
+    private boolean exists;
+    private long num_total_results;
+    private boolean collections;
+    private int errors;
+
+    private final Map<String, SchemaPerEntity> schemas = new LinkedHashMap();
+    private final Map<Object, Handover> handovers = new LinkedHashMap();
+    private final List<BeaconResultset> resultsets = new ArrayList();
+    private final List collections_list = new ArrayList();
+    private final List<String> not_queried = new ArrayList();
+
+    /**
+     * Check whether some beacon returned the collections response.
+     * 
+     * @return true if the response is the collections one
+     */
+    public boolean hasCollections() {
+        return collections;
+    }
+    
+    void setCollections(boolean collections) {
+        this.collections = collections;
+    }
+
+    public List<SchemaPerEntity> getReturnedSchemas() {
+        return new ArrayList(schemas.values());
+    }
+    
+    public List<Handover> getBeaconHandovers() {
+        return new ArrayList(handovers.values());
+    }
+
+    public List<BeaconResultset> getResultsets() {
+        return resultsets;
+    }
+    
+    public List getCollections() {
+        return collections_list;
+    }
+
+    /**
+     * Get the beacons which were not queried, because they can not satisfy the query.
+     * 
+     * @return the list of beacons' identifiers
+     */
+    public List<String> getNotQueried() {
+        return not_queried;
+    }
+
+    void addNotQueried(Collection<String> beacons) {
+        not_queried.addAll(beacons);
+    }
+
+    /**
+     * Get the number of beacons which failed or returned the error response.
+     * 
+     * @return the number of failed beacons
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    void addErrors(int errors) {
+        this.errors += errors;
+    }
+
+    void addReturnedSchemas(Collection<SchemaPerEntity> source_schemas) {
+        for (SchemaPerEntity schema : source_schemas) {
+            schemas.putIfAbsent(schema.getEntityType() + '\n' + schema.getSchema(), schema);
+        }
+    }
+    
+    void addBeaconHandovers(Collection<Handover> source_handovers) {
+        for (Handover handover : source_handovers) {
+            // handovers without url can't be compared
+            handovers.putIfAbsent(handover.getUrl() != null ? handover.getUrl() : new Object(), handover);
+        }
+    }
+    
+    void addResultsets(Collection<BeaconResultset> source_resultsets) {
+        resultsets.addAll(source_resultsets);
+    }
+    
+    void addCollections(Collection source_collections) {
+        collections_list.addAll(source_collections);
+    }
+
+    void addSummary(BeaconResponseSummary source_summary) {
+        if (source_summary != null) {
+            // boolean granularity beacons answer 'exists' without the count
+            exists |= Boolean.TRUE.equals(source_summary.getExists());
+            final Integer source_total = source_summary.getNumTotalResults();
+            if (source_total != null && source_total > 0) {
+                exists = true;
+                num_total_results += source_total;
+            }
+        }
+    }
+
+    /**
+     * Get the summary of the accumulated responses.
+     * The total number of results is saturated to the integer range.
+     * 
+     * @return the response summary
+     */
+    public BeaconResponseSummary getResponseSummary() {
+        final BeaconResponseSummary summary = new BeaconResponseSummary(exists);
+        if (num_total_results > 0) {
+            summary.setNumTotalResults((int)Math.min(num_total_results, Integer.MAX_VALUE));
+        }
+        return summary;
+    }
+    
+    /**
+     * Combine other accumulator into this one.
+     * The content of the other accumulator is appended after this one.
+     * 
+     * @param other the accumulator to combine with
+     */
+    public void combine(BeaconResponseAccumulator other) {
+        combineSummary(other);
+        collections |= other.collections;
+        
+        other.schemas.forEach(schemas::putIfAbsent);
+        other.handovers.forEach(handovers::putIfAbsent);
+        resultsets.addAll(other.resultsets);
+        collections_list.addAll(other.collections_list);
+        not_queried.addAll(other.not_queried);
+        errors += other.errors;
+    }
+
+    /**
+     * Combine only the summary of other accumulator into this one.
+     * 
+     * @param other the accumulator to combine with
+     */
+    void combineSummary(BeaconResponseAccumulator other) {
+        exists |= other.exists;
+        num_total_results += other.num_total_results;
+    }
+}
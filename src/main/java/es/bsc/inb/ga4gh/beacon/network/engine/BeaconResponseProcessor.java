@@ -29,16 +29,13 @@ import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.AbstractBeaconResp
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconError;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconErrorResponse;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponseMeta;
+import es.bsc.inb.ga4gh.beacon.network.log.BeaconLogEntity;
+import es.bsc.inb.ga4gh.beacon.network.log.BeaconLogLevel;
 import es.bsc.inb.ga4gh.beacon.network.model.jsonb.adapter.BeaconResponseDeserializer;
-import es.elixir.bsc.json.schema.ValidationError;
-import es.elixir.bsc.json.schema.model.JsonSchema;
-import jakarta.json.Json;
-import jakarta.json.JsonReader;
-import jakarta.json.JsonValue;
+import es.bsc.inb.ga4gh.beacon.network.schema.StreamingSchemaValidator;
 import jakarta.json.bind.Jsonb;
 import jakarta.json.bind.JsonbBuilder;
 import jakarta.json.bind.JsonbConfig;
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.http.HttpRequest;
@@ -49,10 +46,13 @@ import java.net.http.HttpResponse.BodySubscribers;
 import java.net.http.HttpResponse.ResponseInfo;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Flow;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -67,31 +67,51 @@ public class BeaconResponseProcessor implements BodyPublisher,
     private final static Jsonb JSONB = JsonbBuilder.create(new JsonbConfig()
             .withDeserializers(new BeaconResponseDeserializer()));
 
+    /**
+     * Recent beacons' response sizes used to choose the response buffer segments.
+     */
+    private final static Map<String, Long> SIZE_HINTS = new ConcurrentHashMap();
+
     public final UUID xid;
     public final String beaconId;
     public final String entityType;
     public final String template;
     public final Boolean testMode;
     
+    /**
+     * Whether the results should be kept as raw json (not deserialized).
+     */
+    public final boolean passthrough;
+    
+    /**
+     * The maximum allowed response size (0 - no limit).
+     */
+    public final long maxResponseSize;
+    
     public byte[] req;
-    public byte[] res;
+    public SegmentedBuffer res;
     
     public final long time;
     
     private final BodyPublisher delegate;
     
-    private final JsonSchema schema;
+    private final BeaconResponseValidation validation;
+    
+    private BoundedInputStream body;
     
     public BeaconResponseProcessor(UUID xid, String beaconId, String entityType, 
-            String template, Boolean testMode, byte[] data, JsonSchema schema) {        
+            String template, Boolean testMode, boolean passthrough, long maxResponseSize,
+            byte[] data, BeaconResponseValidation validation) {        
         this.xid = xid;
         this.beaconId = beaconId;
         this.entityType = entityType;
         this.template = template;
         this.testMode = testMode;
+        this.passthrough = passthrough;
+        this.maxResponseSize = maxResponseSize;
         this.req = data;
         delegate = HttpRequest.BodyPublishers.ofByteArray(data);
-        this.schema = schema;
+        this.validation = validation;
         
         time = System.currentTimeMillis();
     }
@@ -128,71 +148,143 @@ public class BeaconResponseProcessor implements BodyPublisher,
             return BodySubscribers.replacing(response);
         }
 
-        return Boolean.TRUE.equals(testMode) ? 
-                BodySubscribers.mapping(BodySubscribers.ofByteArray(), this::apply) :
-                BodySubscribers.mapping(BodySubscribers.ofInputStream(), this::apply);
+        final OptionalLong length = responseInfo.headers().firstValueAsLong("Content-Length");
+        if (maxResponseSize > 0 && length.isPresent() && length.getAsLong() > maxResponseSize) {
+            return new AbortingBodySubscriber(createTooLargeResponse());
+        }
+
+        final long hint = length.orElse(SIZE_HINTS.getOrDefault(beaconId, 0L));
+        
+        return BodySubscribers.mapping(BodySubscribers.ofInputStream(), in -> apply(in, hint));
     }
-    
-    private AbstractBeaconResponse apply(InputStream in) {
-        return apply(new DynamicBufferedInputStream(in));
+
+    /**
+     * Release the buffered response.
+     */
+    public void release() {
+        if (res != null) {
+            res.release();
+        }
     }
     
-    private AbstractBeaconResponse apply(DynamicBufferedInputStream in) {
+    private AbstractBeaconResponse apply(InputStream in, long hint) {
+        if (maxResponseSize > 0) {
+            in = body = new BoundedInputStream(in, maxResponseSize);
+        }
+        if (!passthrough && !isCaptureRequired()) {
+            return apply(in);
+        }
+        res = new SegmentedBuffer(hint);
         try {
-            return JSONB.fromJson(new InputStreamReader(
-                in, StandardCharsets.UTF_8), AbstractBeaconResponse.class);
-        } catch (Exception ex) {
-            if (!Boolean.TRUE.equals(testMode)) {
-                final List<ValidationError> errors = validate(in.buf, in.pos);
-                if (errors == null || !errors.isEmpty()) {
-                    return createErrorResponse(errors);
-                }
-            }
-            final String msg = String.format(
-                    "internal server error: %s failed deserialize valid document %s from %s", 
-                            beaconId, entityType, template);
-            return createErrorResponse(msg);
+            return passthrough ? applyRaw(in) : apply(new DynamicBufferedInputStream(in, res));
         } finally {
-            res = Arrays.copyOf(in.buf, in.pos);
+            SIZE_HINTS.merge(beaconId, res.size(), (h, size) -> (h * 3 + size) / 4);
         }
     }
     
-    private AbstractBeaconResponse apply(byte[] payload) {
-        final List<ValidationError> errors = validate(payload, payload.length);
-        if (errors != null && errors.isEmpty()) {
-            return apply(new ByteArrayInputStream(payload));
+    /**
+     * The response is captured only when it is going to be logged or may be
+     * validated in the test mode. Documents that fail to deserialize outside
+     * the test mode are reported without the validation details.
+     * 
+     * @return true if the response must be captured
+     */
+    private boolean isCaptureRequired() {
+        return BeaconLogLevel.LEVEL.logsResponses(BeaconLogEntity.REQUEST_TYPE.QUERY) ||
+               Boolean.TRUE.equals(testMode);
+    }
+
+    private AbstractBeaconResponse apply(InputStream in) {
+        final boolean validate = Boolean.TRUE.equals(testMode) && validation.sample(beaconId);
+        final StreamingSchemaValidator validator = validate ? validation.newValidator() : null;
+        try {
+            final AbstractBeaconResponse response = BeaconResponseDeserializer.fromJson(
+                    JSONB, new InputStreamReader(in, StandardCharsets.UTF_8), validator);
+            return check(response, validate, validator);
+        } catch (Exception ex) {
+            return createErrorResponse();
         }
-        res = payload;
-        return createErrorResponse(errors);
     }
     
-    private List<ValidationError> validate(byte[] payload, int length) {
-        if (schema != null) {
-            final List<ValidationError> errors = new ArrayList();
-            try (JsonReader reader = Json.createReader(new ByteArrayInputStream(payload, 0, length))) {
-                final JsonValue v = reader.readValue();
-                schema.validate(v, errors);
-            } catch(Exception ex) {
-                final String msg = String.format("%s error parsing %s from %s", 
-                                beaconId, entityType, template);
-                errors.add(new ValidationError(msg));
-            }
-            return errors;
+    private AbstractBeaconResponse applyRaw(InputStream in) {
+        final boolean validate = Boolean.TRUE.equals(testMode) && validation.sample(beaconId);
+        final StreamingSchemaValidator validator = validate ? validation.newValidator() : null;
+        try {
+            res.readFrom(in);
+            final AbstractBeaconResponse response = BeaconResponseDeserializer.fromJson(
+                    JSONB, res, validator);
+            return check(response, validate, validator);
+        } catch (Exception ex) {
+            return createErrorResponse();
         }
-        return null;
+    }
+
+    /**
+     * Check the validity of the deserialized response.
+     * Responses that are not validated are not reported, as they do not
+     * prove the beacon's conformance.
+     * 
+     * @param response deserialized response
+     * @param validate whether the response must be validated
+     * @param validator the validator used for deserialization (may be null)
+     * 
+     * @return either the response or an error response if the document is invalid
+     */
+    private AbstractBeaconResponse check(AbstractBeaconResponse response, 
+            boolean validate, StreamingSchemaValidator validator) {
+        if (!validate) {
+            return response;
+        }
+        final List<String> errors = validator != null 
+                ? validator.getErrors() : validation.validate(res.getInputStream());
+        if (errors == null) {
+            return createErrorResponse(errors);
+        }
+        validation.report(beaconId, errors.isEmpty(), true);
+        return errors.isEmpty() ? response : createErrorResponse(errors);
+    }
+
+    /**
+     * Create the error response for the document that failed to deserialize.
+     * The failure is always reported as invalid response. The document is
+     * validated to provide the error details only if it has been captured.
+     * 
+     * @return error response
+     */
+    private BeaconErrorResponse createErrorResponse() {
+        if (body != null && body.isExceeded()) {
+            return createTooLargeResponse();
+        }
+        final List<String> errors = res != null ? validation.validate(res.getInputStream()) : null;
+        validation.report(beaconId, false, errors != null);
+        if (errors != null && !errors.isEmpty()) {
+            return createErrorResponse(errors);
+        }
+        final String msg = String.format(
+                "internal server error: %s failed deserialize document %s from %s", 
+                        beaconId, entityType, template);
+        return createErrorResponse(msg);
     }
     
-    private BeaconErrorResponse createErrorResponse(List<ValidationError> errors) {
+    private BeaconErrorResponse createErrorResponse(List<String> errors) {
         if (errors != null) {
             final StringBuilder sb = new StringBuilder();
-            for (ValidationError error : errors) {
-                sb.append(error.path).append(' ').append(error.message).append('\n');
+            for (String error : errors) {
+                sb.append(error).append('\n');
             }
             return createErrorResponse(sb.toString());
         }
         return createErrorResponse("internal server error: no Beacon Schema found!");
     }
 
+    private BeaconErrorResponse createTooLargeResponse() {
+        final String msg = String.format("%s response too large (more than %d bytes) from %s", 
+                beaconId, maxResponseSize, template);
+        final BeaconErrorResponse response = createErrorResponse(msg);
+        response.getError().setErrorCode(413);
+        return response;
+    }
+
     private BeaconErrorResponse createErrorResponse(String msg) {
         Logger.getLogger(BeaconResponseProcessor.class.getName())
                 .log(Level.INFO, msg);
@@ -207,4 +299,35 @@ public class BeaconResponseProcessor implements BodyPublisher,
         response.setError(error);
         return response;
     }
+
+    /**
+     * The body subscriber that cancels the exchange without reading the body.
+     */
+    private static class AbortingBodySubscriber implements BodySubscriber<AbstractBeaconResponse> {
+
+        private final CompletableFuture<AbstractBeaconResponse> response;
+
+        private AbortingBodySubscriber(AbstractBeaconResponse response) {
+            this.response = CompletableFuture.completedFuture(response);
+        }
+
+        @Override
+        public CompletionStage<AbstractBeaconResponse> getBody() {
+            return response;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {}
+
+        @Override
+        public void onError(Throwable throwable) {}
+
+        @Override
+        public void onComplete() {}
+    }
 }
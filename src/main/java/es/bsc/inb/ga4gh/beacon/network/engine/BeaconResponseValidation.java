@@ -0,0 +1,232 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import es.bsc.inb.ga4gh.beacon.network.schema.StreamingJsonSchema;
+import es.bsc.inb.ga4gh.beacon.network.schema.StreamingSchemaValidator;
+import es.bsc.inb.ga4gh.beacon.validator.BeaconFrameworkSchema;
+import es.elixir.bsc.json.schema.JsonSchemaReader;
+import es.elixir.bsc.json.schema.ValidationError;
+import es.elixir.bsc.json.schema.model.JsonSchema;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+import java.io.InputStream;
+import java.net.URL;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Beacons' responses validation against the Beacon Response schema.
+ * 
+ * Beacons are validated on every response until they have 
+ * BEACON_NETWORK_VALIDATION_TRUST_THRESHOLD consecutive validated responses 
+ * that passed the validation. Responses that are not validated do not build
+ * the trust, while the ones that fail to deserialize count as failures.
+ * Trusted beacons are validated only on 1 in BEACON_NETWORK_VALIDATION_SAMPLING_RATE
+ * responses. Any failure moves the beacon back to full validation for the
+ * BEACON_NETWORK_VALIDATION_COOLDOWN seconds.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class BeaconResponseValidation {
+    
+    private JsonSchema schema;
+    private StreamingJsonSchema streaming_schema;
+
+    private final Map<String, Trust> trust = new ConcurrentHashMap();
+
+    @PostConstruct
+    public void init() {
+        try {
+            final URL url = BeaconResponseValidation.class.getClassLoader().getResource(BeaconFrameworkSchema.BEACON_RESPONSE_SCHEMA.SCHEMA);
+            if (url != null) {
+                schema = JsonSchemaReader.getReader().read(url);
+                streaming_schema = StreamingJsonSchema.load(url);
+            }
+        } catch(Exception ex) {
+            Logger.getLogger(BeaconResponseValidation.class.getName()).log(Level.SEVERE, "error loading schema {0} {1}", 
+                    new Object[]{BeaconFrameworkSchema.BEACON_RESPONSE_SCHEMA.SCHEMA, ex.getMessage()});
+        }
+    }
+
+    /**
+     * Decide whether the beacon response must be validated.
+     * 
+     * @param beaconId the beacon identifier
+     * 
+     * @return true if the response is to be validated
+     */
+    public boolean sample(String beaconId) {
+        return trust.computeIfAbsent(beaconId, k -> new Trust()).sample();
+    }
+
+    /**
+     * Report the outcome of the beacon response processing.
+     * 
+     * @param beaconId the beacon identifier
+     * @param valid whether the response was deserialized and passed the 
+     *        validation (if validated)
+     * @param validated whether the response was validated against the schema,
+     *        only validated valid responses are counted as clean ones
+     */
+    public void report(String beaconId, boolean valid, boolean validated) {
+        trust.computeIfAbsent(beaconId, k -> new Trust()).report(valid, validated);
+    }
+
+    /**
+     * Create the validator to validate the response while it is parsed.
+     * 
+     * @return new validator or null if no streaming schema is available
+     */
+    public StreamingSchemaValidator newValidator() {
+        return streaming_schema != null ? streaming_schema.newValidator() : null;
+    }
+    
+    /**
+     * Validate the document against the Beacon Response schema.
+     * The document is validated on the parser events, falling back to the
+     * JsonSchema validation when the streaming schema is not available.
+     * 
+     * @param in the document
+     * 
+     * @return the list of validation errors or null if no schema found
+     */
+    public List<String> validate(InputStream in) {
+        if (streaming_schema != null) {
+            final StreamingSchemaValidator validator = streaming_schema.newValidator();
+            try (JsonParser parser = Json.createParser(in)) {
+                return validator.validate(parser);
+            } catch(Exception ex) {
+                final List<String> errors = new ArrayList(validator.getErrors());
+                errors.add("/ error parsing json: " + ex.getMessage());
+                return errors;
+            }
+        }
+        if (schema != null) {
+            final List<String> messages = new ArrayList();
+            try (JsonReader reader = Json.createReader(in)) {
+                final JsonValue v = reader.readValue();
+                final List<ValidationError> errors = new ArrayList();
+                schema.validate(v, errors);
+                for (ValidationError error : errors) {
+                    messages.add(error.path + " " + error.message);
+                }
+            } catch(Exception ex) {
+                messages.add("/ error parsing json: " + ex.getMessage());
+            }
+            return messages;
+        }
+        return null;
+    }
+
+    /**
+     * Get the validation state of the beacons to be shown in the '/info'.
+     * 
+     * @return beacons' validation state or null if no beacons were validated
+     */
+    public JsonObject getTrustState() {
+        if (trust.isEmpty()) {
+            return null;
+        }
+        final JsonObjectBuilder beacons = Json.createObjectBuilder();
+        for (Map.Entry<String, Trust> entry : trust.entrySet()) {
+            beacons.add(entry.getKey(), entry.getValue().toJson());
+        }
+        return beacons.build();
+    }
+
+    /**
+     * The beacon's validation history.
+     */
+    private static class Trust {
+        private long clean;
+        private long validated;
+        private long skipped;
+        private long failures;
+        private long cooldown;
+        private long counter;
+        
+        private synchronized boolean isTrusted() {
+            return ConfigurationProperties.BN_VALIDATION_SAMPLING_RATE_PROPERTY > 1 &&
+                   clean >= ConfigurationProperties.BN_VALIDATION_TRUST_THRESHOLD_PROPERTY &&
+                   System.currentTimeMillis() >= cooldown;
+        }
+        
+        private synchronized boolean sample() {
+            if (isTrusted() && 
+                ++counter % ConfigurationProperties.BN_VALIDATION_SAMPLING_RATE_PROPERTY != 0) {
+                skipped++;
+                return false;
+            }
+            return true;
+        }
+        
+        private synchronized void report(boolean valid, boolean validated) {
+            if (validated) {
+                this.validated++;
+            }
+            if (valid) {
+                if (validated) {
+                    clean++;
+                }
+            } else {
+                clean = 0;
+                failures++;
+                cooldown = System.currentTimeMillis() + 
+                        ConfigurationProperties.BN_VALIDATION_COOLDOWN_PROPERTY * 1000;
+            }
+        }
+        
+        private synchronized JsonObject toJson() {
+            final boolean trusted = isTrusted();
+            final JsonObjectBuilder builder = Json.createObjectBuilder()
+                    .add("trusted", trusted)
+                    .add("sampling_rate", trusted ? ConfigurationProperties.BN_VALIDATION_SAMPLING_RATE_PROPERTY : 1)
+                    .add("clean_validations", clean)
+                    .add("validated", validated)
+                    .add("skipped", skipped)
+                    .add("failures", failures);
+            if (cooldown > System.currentTimeMillis()) {
+                builder.add("cooldown_until", Instant.ofEpochMilli(cooldown).toString());
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,420 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestMeta;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestQuery;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconCollections;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconCollectionsResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsets;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsetsResponse;
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfigUpdatedEvent;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfiguration;
+import es.bsc.inb.ga4gh.beacon.network.model.JsonRawValue;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.ObservesAsync;
+import jakarta.inject.Inject;
+import jakarta.json.JsonObject;
+import jakarta.servlet.http.HttpServletRequest;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the aggregated beacon network responses.
+ * 
+ * Responses are keyed by the canonical query, the request metadata and the
+ * client's authorization, so the clients with different credentials never
+ * share the results. Entries live for the BEACON_NETWORK_CACHE_TTL seconds
+ * (may be overridden per entry type via BEACON_NETWORK_CACHE_TTLS) and then
+ * are still returned for BEACON_NETWORK_CACHE_STALE seconds while being 
+ * refreshed in the background.
+ * 
+ * The cache is bounded by the estimated size of the responses (BEACON_NETWORK_CACHE_SIZE)
+ * and evicts the least recently used entries. When the cache is full, only 
+ * the queries that have been already seen are admitted, so one-off queries
+ * do not flush the popular ones. Entries are dropped when metadata or settings 
+ * of the beacons they were aggregated from change.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class BeaconResultsCache {
+    
+    // more failed beacons than that and the response is not cached
+    private final static double MAX_ERRORS_RATE = 0.25;
+
+    // estimated size of the not raw record
+    private final static int RECORD_WEIGHT = 512;
+
+    // the raw record object and its buffer headers
+    private final static int RAW_RECORD_OVERHEAD = 96;
+
+    // the number of queries remembered by the admission filter
+    private final static int ADMISSION_SIZE = 1 << 16;
+
+    private final static Map<String, Long> TTLS = parse(
+            ConfigurationProperties.BN_CACHE_TTLS_PROPERTY);
+
+    @Inject
+    private NetworkConfiguration configuration;
+
+    @Inject
+    private BeaconNetworkRequestAnalyzer requestAnalyzer;
+    
+    /**
+     * The cached response.
+     * 
+     * @param response the aggregated beacon network response
+     * @param stale whether the response is expired and should be refreshed
+     */
+    public record Cached(BeaconResponse response, boolean stale) {}
+
+    private record Entry(BeaconResponse response, Set<String> beacons, 
+            long weight, long fresh, long expires) {}
+
+    // access ordered, so the eldest entry is the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap(16, 0.75f, true);
+    private long weight;
+
+    // queries seen since the last admission filter reset
+    private final BitSet seen = new BitSet(ADMISSION_SIZE);
+    private int admissions;
+
+    // entries being refreshed
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    // beacons' metadata and settings signatures
+    private volatile Map<String, Integer> signatures = Collections.EMPTY_MAP;
+
+    /**
+     * Called when beacon network configuration has been updated.
+     * Drops the entries of the beacons which metadata or settings have changed.
+     * 
+     * @param event update event
+     */
+    public void onEvent(@ObservesAsync NetworkConfigUpdatedEvent event) {
+        final Map<String, Integer> updated = new HashMap();
+        for (String beacon_id : configuration.getEndpoints().keySet()) {
+            updated.put(beacon_id, getSignature(beacon_id));
+        }
+        
+        final Set<String> changed = new HashSet();
+        for (Map.Entry<String, Integer> entry : signatures.entrySet()) {
+            if (!entry.getValue().equals(updated.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        final boolean added = !signatures.keySet().containsAll(updated.keySet());
+        signatures = updated;
+        
+        if (added) {
+            // new beacons may answer any query
+            invalidate(null);
+        } else if (!changed.isEmpty()) {
+            invalidate(changed);
+        }
+    }
+
+    /**
+     * Get the key of the client's request.
+     * 
+     * @param request the client's request
+     * @param meta beacon network request metadata
+     * @param query beacon network query
+     * @param canonical the canonical query
+     * 
+     * @return the request key or null if the response should not be cached
+     */
+    public String getKey(HttpServletRequest request, BeaconRequestMeta meta, 
+            BeaconRequestQuery query, CanonicalQuery canonical) {
+
+        if (!ConfigurationProperties.BN_CACHE_PROPERTY ||
+             ConfigurationProperties.BN_PROGRESSIVE_RESPONSE_PROPERTY ||
+             Boolean.TRUE.equals(canonical.getTestMode()) ||
+             getTTL(canonical.getEntryType()) <= 0) {
+            return null;
+        }
+        final MessageDigest digest = requestAnalyzer.getScopeDigest(request, meta, query, canonical);
+        return digest == null ? null : 
+                Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    /**
+     * Get the cached response.
+     * 
+     * @param key the request key
+     * 
+     * @return the cached response or null
+     */
+    public Cached get(String key) {
+        final long now = System.currentTimeMillis();
+        synchronized(entries) {
+            final Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires() < now) {
+                remove(key);
+                return null;
+            }
+            return new Cached(entry.response(), entry.fresh() < now);
+        }
+    }
+
+    /**
+     * Mark the stale response as being refreshed.
+     * 
+     * @param key the request key
+     * 
+     * @return true if the response is not already being refreshed
+     */
+    public boolean revalidate(String key) {
+        return revalidating.add(key);
+    }
+
+    /**
+     * Mark the response refresh as finished.
+     * 
+     * @param key the request key
+     */
+    public void release(String key) {
+        revalidating.remove(key);
+    }
+
+    /**
+     * Put the aggregated response into the cache.
+     * 
+     * The response is not cached when too many beacons failed or when it is
+     * larger than a part of the cache.
+     * 
+     * @param key the request key
+     * @param canonical the canonical query
+     * @param beacons the beacons the response was aggregated from
+     * @param response the aggregated beacon network response
+     * @param errors the number of failed beacons
+     */
+    public void put(String key, CanonicalQuery canonical, Collection<String> beacons, 
+            BeaconResponse response, int errors) {
+
+        if (errors > beacons.size() * MAX_ERRORS_RATE) {
+            return;
+        }
+        
+        final long size = weigh(response);
+        if (size > ConfigurationProperties.BN_CACHE_SIZE_PROPERTY / 8) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final long fresh = now + TimeUnit.SECONDS.toMillis(getTTL(canonical.getEntryType()));
+        final Entry entry = new Entry(response, Set.copyOf(beacons), size, fresh,
+                fresh + TimeUnit.SECONDS.toMillis(ConfigurationProperties.BN_CACHE_STALE_PROPERTY));
+
+        synchronized(entries) {
+            if (!admit(key, size)) {
+                return;
+            }
+            remove(key);
+            entries.put(key, entry);
+            weight += size;
+
+            final Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+            while (weight > ConfigurationProperties.BN_CACHE_SIZE_PROPERTY && iter.hasNext()) {
+                weight -= iter.next().getValue().weight();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Check whether the new entry should be cached. 
+     * When there is no room for the entry, it is admitted only if the query 
+     * has been seen before.
+     * 
+     * @param key the request key
+     * @param size the estimated size of the entry
+     * 
+     * @return true if the entry should be cached
+     */
+    private boolean admit(String key, long size) {
+        if (entries.containsKey(key) || 
+            weight + size <= ConfigurationProperties.BN_CACHE_SIZE_PROPERTY) {
+            return true;
+        }
+
+        final int bit = key.hashCode() & (ADMISSION_SIZE - 1);
+        if (seen.get(bit)) {
+            return true;
+        }
+
+        // forget old queries, so the filter is not saturated
+        if (++admissions > ADMISSION_SIZE / 4) {
+            seen.clear();
+            admissions = 0;
+        }
+        seen.set(bit);
+        return false;
+    }
+
+    /**
+     * Remove the entries aggregated from the beacons.
+     * 
+     * @param beacons the beacons identifiers or null to remove all the entries
+     */
+    private void invalidate(Set<String> beacons) {
+        synchronized(entries) {
+            if (beacons == null) {
+                entries.clear();
+                weight = 0;
+                return;
+            }
+            for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();) {
+                final Entry entry = iter.next();
+                if (!Collections.disjoint(entry.beacons(), beacons)) {
+                    weight -= entry.weight();
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    private void remove(String key) {
+        final Entry entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight();
+        }
+    }
+
+    /**
+     * Get the signature of the beacon's metadata and settings.
+     * 
+     * Metadata objects are only replaced when the beacon's metadata changes,
+     * so their identities are enough to detect the changes.
+     * 
+     * @param beacon_id the beacon identifier
+     * 
+     * @return the signature
+     */
+    private int getSignature(String beacon_id) {
+        final JsonObject settings = configuration.getSettings(beacon_id);
+        return Objects.hash(configuration.getEndpoints().get(beacon_id),
+                System.identityHashCode(configuration.getInfos().get(beacon_id)),
+                System.identityHashCode(configuration.getConfigurations().get(beacon_id)),
+                System.identityHashCode(configuration.getMaps().get(beacon_id)),
+                System.identityHashCode(configuration.getEntries().get(beacon_id)),
+                System.identityHashCode(configuration.getFilteringTerms().get(beacon_id)),
+                settings);
+    }
+
+    /**
+     * Estimate the memory used by the aggregated response.
+     * Raw records are weighed by the heap they retain (the whole buffer they
+     * are part of), while the mapped ones only by their objects overhead.
+     * 
+     * @param response the aggregated beacon network response
+     * 
+     * @return estimated size in bytes
+     */
+    private static long weigh(BeaconResponse response) {
+        long size = 1024;
+        if (response instanceof BeaconResultsetsResponse res) {
+            final BeaconResultsets resultsets = res.getResponse();
+            final List<BeaconResultset> list = resultsets == null ? null : resultsets.getResultSets();
+            if (list != null) {
+                for (BeaconResultset resultset : list) {
+                    size += RECORD_WEIGHT;
+                    final List results = resultset.getResults();
+                    if (results != null) {
+                        for (Object result : results) {
+                            if (result instanceof JsonRawValue raw) {
+                                size += RAW_RECORD_OVERHEAD + raw.getRetainedSize();
+                            } else {
+                                size += RECORD_WEIGHT;
+                            }
+                        }
+                    }
+                }
+            }
+        } else if (response instanceof BeaconCollectionsResponse res) {
+            final BeaconCollections collections = res.getResponse();
+            if (collections != null && collections.getCollections() != null) {
+                size += collections.getCollections().size() * (long)RECORD_WEIGHT;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the time to live for the entry type.
+     * 
+     * @param entry_type the endpoint entry type (e.g. 'individual:biosample')
+     * 
+     * @return the time to live in seconds
+     */
+    private static long getTTL(String entry_type) {
+        if (entry_type == null) {
+            return 0;
+        }
+        final Long ttl = TTLS.get(entry_type.substring(entry_type.lastIndexOf(':') + 1));
+        return ttl != null ? ttl : ConfigurationProperties.BN_CACHE_TTL_PROPERTY;
+    }
+
+    /**
+     * Parse time to live definitions (e.g. 'dataset=3600,individual=60').
+     */
+    private static Map<String, Long> parse(String property) {
+        final Map<String, Long> ttls = new HashMap();
+        if (property != null) {
+            for (String definition : property.split(",")) {
+                final int idx = definition.indexOf('=');
+                if (idx > 0) {
+                    try {
+                        ttls.put(definition.substring(0, idx).trim(), 
+                                Long.valueOf(definition.substring(idx + 1).trim()));
+                    } catch (NumberFormatException ex) {}
+                }
+            }
+        }
+        return Collections.unmodifiableMap(ttls);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The InputStream that aborts reading when more than the maximum allowed
+ * number of bytes is read. The underlying stream is closed at once, so the
+ * http exchange is cancelled.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class BoundedInputStream extends FilterInputStream {
+
+    public final long max;
+    
+    private long count;
+    private boolean exceeded;
+    
+    /**
+     * @param in the stream to read
+     * @param max the maximum number of bytes allowed to read
+     */
+    public BoundedInputStream(InputStream in, long max) {
+        super(in);
+        
+        this.max = max;
+    }
+
+    /**
+     * @return true if the stream has been aborted because of the limit
+     */
+    public boolean isExceeded() {
+        return exceeded;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        final int b = in.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        final int n = in.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long s = in.skip(n);
+        if (s > 0) {
+            count(s);
+        }
+        return s;
+    }
+
+    private void count(long n) throws IOException {
+        count += n;
+        if (count > max) {
+            exceeded = true;
+            in.close();
+            throw new IOException("response exceeds " + max + " bytes");
+        }
+    }
+}
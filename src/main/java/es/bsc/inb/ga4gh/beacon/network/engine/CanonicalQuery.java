@@ -0,0 +1,259 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable normal form of the client's query.
+ * 
+ * The query is parsed once per request (either from the GET parameters or 
+ * from the POST content) and reused for the routing and the response metadata.
+ * Filters are sorted and deduplicated and the request parameters' keys are 
+ * sorted, so the equivalent queries have the same 128-bit fingerprint.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public final class CanonicalQuery {
+    
+    private final String entry_type;
+    private final List<String> path_parameters;
+    private final List<String> filters;
+    private final List<String> filter_ids;
+    private final List<String> descendant_ids;
+    private final String granularity;
+    private final Integer skip;
+    private final Integer limit;
+    private final Boolean test_mode;
+    private final JsonObject request_parameters;
+    private final List<String> dataset_ids;
+    
+    private final long fingerprint_hi;
+    private final long fingerprint_lo;
+
+    /**
+     * @param entry_type the requested endpoint entry type (e.g. 'individual:biosample')
+     * @param path_parameters path parameters' values (e.g. the entry identifier)
+     * @param filters filters in the canonical form (the 'id' or the canonical json)
+     * @param filter_ids filters' identifiers
+     * @param descendant_ids identifiers of the filters which include descendant terms
+     * @param granularity requested granularity
+     * @param skip pagination skip
+     * @param limit pagination limit
+     * @param test_mode test mode
+     * @param request_parameters request parameters
+     * @param dataset_ids requested datasets' identifiers
+     */
+    CanonicalQuery(String entry_type, List<String> path_parameters, 
+            List<String> filters, List<String> filter_ids, List<String> descendant_ids, 
+            String granularity, Integer skip, Integer limit, Boolean test_mode, 
+            JsonObject request_parameters, List<String> dataset_ids) {
+
+        this.entry_type = entry_type;
+        this.path_parameters = List.copyOf(path_parameters);
+        this.filters = filters.stream().sorted().distinct().toList();
+        this.filter_ids = filter_ids.stream().sorted().distinct().toList();
+        this.descendant_ids = descendant_ids.stream().sorted().distinct().toList();
+        this.granularity = granularity;
+        this.skip = skip;
+        this.limit = limit;
+        this.test_mode = test_mode;
+        this.request_parameters = request_parameters;
+        this.dataset_ids = dataset_ids.stream().sorted().distinct().toList();
+        
+        final ByteBuffer fingerprint = ByteBuffer.wrap(digest(toString()));
+        fingerprint_hi = fingerprint.getLong();
+        fingerprint_lo = fingerprint.getLong();
+    }
+
+    public String getEntryType() {
+        return entry_type;
+    }
+
+    public List<String> getPathParameters() {
+        return path_parameters;
+    }
+
+    public List<String> getFilters() {
+        return filters;
+    }
+
+    public List<String> getFilterIds() {
+        return filter_ids;
+    }
+
+    /**
+     * Get the filters which also match the descendant terms (ontology filters
+     * without explicit 'includeDescendantTerms: false').
+     * 
+     * @return the filters' identifiers
+     */
+    public List<String> getDescendantFilterIds() {
+        return descendant_ids;
+    }
+
+    public String getRequestedGranularity() {
+        return granularity;
+    }
+
+    public Integer getSkip() {
+        return skip;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public Boolean getTestMode() {
+        return test_mode;
+    }
+
+    public JsonObject getRequestParameters() {
+        return request_parameters;
+    }
+
+    public List<String> getDatasetIds() {
+        return dataset_ids;
+    }
+
+    /**
+     * Get the 128-bit fingerprint of the query.
+     * 
+     * @return the fingerprint as 32 hex digits
+     */
+    public String getFingerprint() {
+        return String.format("%016x%016x", fingerprint_hi, fingerprint_lo);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CanonicalQuery other && 
+               fingerprint_hi == other.fingerprint_hi &&
+               fingerprint_lo == other.fingerprint_lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint_hi ^ fingerprint_lo);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append(entry_type).append('\n')
+                .append(canonicalList(path_parameters)).append('\n')
+                .append(canonicalList(filters)).append('\n')
+                .append(granularity).append('\n')
+                .append(skip).append('\n')
+                .append(limit).append('\n')
+                .append(test_mode).append('\n')
+                .append(canonical(request_parameters)).append('\n')
+                .append(canonicalList(dataset_ids)).toString();
+    }
+
+    /**
+     * Write the strings as the json array, so the separators inside 
+     * the values can not be confused with the list ones.
+     */
+    private static String canonicalList(List<String> values) {
+        return canonical(JsonRecords.PROVIDER.createArrayBuilder(values).build());
+    }
+
+    /**
+     * Write the json value with the objects' keys sorted.
+     * 
+     * @param value json value
+     * 
+     * @return canonical json string
+     */
+    static String canonical(JsonValue value) {
+        final StringBuilder sb = new StringBuilder();
+        canonical(sb, value);
+        return sb.toString();
+    }
+
+    private static void canonical(StringBuilder sb, JsonValue value) {
+        if (value instanceof JsonObject object) {
+            final Map<String, JsonValue> sorted = new TreeMap(object);
+            sb.append('{');
+            for (Map.Entry<String, JsonValue> entry : sorted.entrySet()) {
+                if (sb.charAt(sb.length() - 1) != '{') {
+                    sb.append(',');
+                }
+                sb.append(JsonRecords.PROVIDER.createValue(entry.getKey())).append(':');
+                canonical(sb, entry.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof JsonArray array) {
+            sb.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                canonical(sb, array.get(i));
+            }
+            sb.append(']');
+        } else {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * Get the filter in the canonical form.
+     * 
+     * @param filter the filter from the query
+     * 
+     * @return the filter identifier for the simple filters or the canonical json
+     */
+    static String canonicalFilter(JsonValue filter) {
+        if (filter instanceof JsonString id) {
+            return id.getString();
+        }
+        if (filter instanceof JsonObject object && object.size() == 1 && 
+            object.get("id") instanceof JsonString id) {
+            return id.getString();
+        }
+        return canonical(filter);
+    }
+
+    private static byte[] digest(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("no SHA-256 digest available", ex);
+        }
+    }
+}
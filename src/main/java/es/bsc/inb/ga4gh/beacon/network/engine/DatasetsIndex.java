@@ -0,0 +1,271 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.BeaconMap;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.Endpoint;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconMapResponse;
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfigUpdatedEvent;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfiguration;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.ObservesAsync;
+import jakarta.inject.Inject;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.UriBuilder;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the datasets' owners.
+ * 
+ * The index is refreshed in the background from the beacons' datasets 
+ * collection endpoints ('/datasets') on every beacon network configuration
+ * update, so the queries scoped to the datasets are sent only to the beacons
+ * that own them.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class DatasetsIndex {
+
+    private final static int PAGE_SIZE = 1000;
+    private final static int MAX_DATASETS = 100000;
+
+    @Inject
+    private NetworkConfiguration configuration;
+
+    private HttpClient http_client;
+
+    private volatile Index index = new Index(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+
+    /**
+     * Immutable index snapshot.
+     * 
+     * @param indexed beacons which datasets are known
+     * @param owners beacons' identifiers by the dataset identifier
+     */
+    private record Index(Set<String> indexed, Map<String, List<String>> owners) {}
+
+    @PostConstruct
+    public void init() {
+        http_client = HttpClient.newBuilder()
+            .followRedirects(Redirect.ALWAYS)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    }
+
+    /**
+     * Called when beacon network configuration has been updated.
+     * 
+     * @param event update event
+     */
+    public void onEvent(@ObservesAsync NetworkConfigUpdatedEvent event) {
+        if (!ConfigurationProperties.BN_DATASETS_ROUTING_PROPERTY) {
+            return;
+        }
+
+        final Map<String, CompletableFuture<Set<String>>> datasets = new HashMap();
+        for (Map.Entry<String, BeaconMapResponse> entry : configuration.getMaps().entrySet()) {
+            final String url = getDatasetsEndpoint(entry.getKey(), entry.getValue());
+            if (url != null) {
+                datasets.put(entry.getKey(), fetch(url, 0, new LinkedHashSet())
+                        .orTimeout(ConfigurationProperties.BN_REQUEST_TIMEOUT_PROPERTY, TimeUnit.SECONDS)
+                        .exceptionally(ex -> null));
+            }
+        }
+
+        final Set<String> indexed = new HashSet();
+        final Map<String, List<String>> owners = new HashMap();
+        for (Map.Entry<String, CompletableFuture<Set<String>>> entry : datasets.entrySet()) {
+            final Set<String> ids = entry.getValue().join();
+            if (ids != null) {
+                indexed.add(entry.getKey());
+                for (String id : ids) {
+                    owners.computeIfAbsent(id, k -> new ArrayList(1)).add(entry.getKey());
+                }
+            }
+        }
+        index = new Index(indexed, owners);
+    }
+
+    /**
+     * Find the beacons that do not own any of the requested datasets.
+     * 
+     * Nothing is pruned when some requested dataset is unknown, as it may be
+     * just created. Beacons which datasets could not be loaded are never pruned.
+     * 
+     * @param beacons the beacons matched for the query
+     * @param dataset_ids the requested datasets' identifiers
+     * 
+     * @return the beacons that should not be queried
+     */
+    public List<String> prune(Collection<String> beacons, List<String> dataset_ids) {
+        if (dataset_ids.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+
+        final Index snapshot = index;
+
+        final Set<String> owners = new HashSet();
+        for (String dataset_id : dataset_ids) {
+            final List<String> dataset_owners = snapshot.owners.get(dataset_id);
+            if (dataset_owners == null) {
+                return Collections.EMPTY_LIST;
+            }
+            owners.addAll(dataset_owners);
+        }
+
+        List<String> pruned = Collections.EMPTY_LIST;
+        for (String beaconId : beacons) {
+            if (snapshot.indexed.contains(beaconId) && !owners.contains(beaconId)) {
+                if (pruned.isEmpty()) {
+                    pruned = new ArrayList();
+                }
+                pruned.add(beaconId);
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Get the datasets collection endpoint from the beacon map.
+     * 
+     * @param beaconId the beacon identifier
+     * @param map_response the beacon map
+     * 
+     * @return the datasets endpoint url or null if the beacon has no datasets endpoint
+     */
+    private String getDatasetsEndpoint(String beaconId, BeaconMapResponse map_response) {
+        final BeaconMap map = map_response.getResponse();
+        final String api_root = configuration.getEndpoints().get(beaconId);
+        if (map == null || map.getEndpointSets() == null || api_root == null) {
+            return null;
+        }
+
+        for (Map.Entry<String, Endpoint> entry : map.getEndpointSets().entrySet()) {
+            final Endpoint endpoint = entry.getValue();
+            final String entry_type = endpoint.getEntryType() != null 
+                    ? endpoint.getEntryType() : entry.getKey();
+            if ("dataset".equals(entry_type) && endpoint.getRootUrl() != null) {
+                try {
+                    return URI.create(api_root).resolve(endpoint.getRootUrl()).toString();
+                } catch (Exception ex) {
+                    Logger.getLogger(DatasetsIndex.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fetch all datasets' identifiers page by page.
+     * 
+     * @param url the datasets endpoint
+     * @param skip the number of datasets to skip
+     * @param ids the identifiers collected so far
+     * 
+     * @return the datasets' identifiers or null if the datasets could not be loaded
+     */
+    private CompletableFuture<Set<String>> fetch(String url, int skip, Set<String> ids) {
+        final HttpRequest request = HttpRequest.newBuilder(UriBuilder.fromUri(url)
+                    .replaceQueryParam("skip", skip)
+                    .replaceQueryParam("limit", PAGE_SIZE).build())
+                .header(HttpHeaders.USER_AGENT, "BN/2.0.0")
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+                .GET().build();
+
+        return http_client.sendAsync(request, BodyHandlers.ofInputStream())
+                .thenCompose(response -> {
+                    final int size = ids.size();
+                    final int count = read(response, ids);
+                    if (count < 0) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    // beacons may cap the 'limit', so read until no new datasets come
+                    if (count > 0 && ids.size() > size && ids.size() < MAX_DATASETS) {
+                        return fetch(url, skip + count, ids);
+                    }
+                    return CompletableFuture.completedFuture(ids);
+                });
+    }
+
+    /**
+     * Read the datasets' identifiers from the collections response.
+     * 
+     * @param response the datasets endpoint response
+     * @param ids the set to put the identifiers into
+     * 
+     * @return the number of datasets in the response or -1 on error
+     */
+    private int read(HttpResponse<InputStream> response, Set<String> ids) {
+        try (InputStream in = response.body();
+             JsonReader reader = JsonRecords.PROVIDER.createReader(in)) {
+            if (response.statusCode() == 200 && 
+                reader.readValue() instanceof JsonObject body &&
+                body.get("response") instanceof JsonObject res &&
+                res.get("collections") instanceof JsonArray collections) {
+                for (JsonValue collection : collections) {
+                    if (collection instanceof JsonObject dataset && 
+                        dataset.get("id") instanceof JsonString id) {
+                        ids.add(id.getString());
+                    }
+                }
+                return collections.size();
+            }
+        } catch (Exception ex) {
+            Logger.getLogger(DatasetsIndex.class.getName()).log(
+                    Level.INFO, "error reading datasets {0}", ex.getMessage());
+        }
+        return -1;
+    }
+}
@@ -28,76 +28,57 @@ package es.bsc.inb.ga4gh.beacon.network.engine;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.io.OutputStream;
 
 /**
- * Caching InputStream that keeps read data.
+ * Caching InputStream that keeps read data in the segmented buffer.
  * 
  * @author Dmitry Repchevsky
  */
 
 public class DynamicBufferedInputStream extends FilterInputStream {
     
-    public int pos;
-    public byte[] buf;
+    public final SegmentedBuffer buffer;
     
-    public DynamicBufferedInputStream(InputStream in) {
+    public DynamicBufferedInputStream(InputStream in, SegmentedBuffer buffer) {
         super(in);
         
-        buf = new byte[1024];
+        this.buffer = buffer;
     }
     
     @Override
     public int read() throws IOException {
-        if (pos >= buf.length) {
-            buf = Arrays.copyOf(buf, buf.length * 2);
+        final int b = in.read();
+        if (b >= 0) {
+            buffer.write(b);
         }
-        int b = in.read();
-        buf[pos++] = (byte)b;
         return b;
     }
 
-    @Override
-    public int read(byte b[]) throws IOException {
-        if (pos + b.length >= buf.length) {
-            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + b.length));
-        }
-        final int n = read(b, 0, b.length);
-        if (n > 0) {
-            System.arraycopy(b, 0, buf, pos, n);
-            pos += n;
-        }
-        return n;
-    }
-    
     @Override
     public int read(byte b[], int off, int len) throws IOException {
-        if (pos + len >= buf.length) {
-            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + len));
-        }
         final int n = in.read(b, off, len);
         if (n > 0) {
-            System.arraycopy(b, off, buf, pos, n);
-            pos += n;
+            buffer.write(b, off, n);
         }
         return n;
     }
     
     @Override
     public long skip(long n) throws IOException {
-        if (pos + n >= buf.length) {
-            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + (int)n));
-        }
-        final int s = read(buf, pos, (int) n);
-        if (s > 0) {
-            pos += s;
-        }
-        return s;
+        final byte[] b = new byte[(int)Math.min(n, 8192)];
+        final int s = read(b, 0, b.length);
+        return Math.max(s, 0);
     }
     
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
     @Override
     public void close() throws IOException {
-        super.readAllBytes();
+        transferTo(OutputStream.nullOutputStream());
         in.close();
     }
 }
@@ -45,6 +45,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -72,6 +73,11 @@ public class EndpointsDefinitions {
      */
     private Map<String, Map<String, String>> entities;
 
+    /**
+     * Compiled endpoints' templates by the template url.
+     */
+    private final Map<String, UrlTemplate> templates = new ConcurrentHashMap();
+
     public Map<String, Map<String, String>> getEndpoints() {
         return endpoints;
     }
@@ -92,9 +98,24 @@ public class EndpointsDefinitions {
      * @param event update event
      */
     public void onEvent(@ObservesAsync NetworkConfigUpdatedEvent event) {
-        endpoints = getEndpoints(configuration);
+        final Map<String, Map<String, String>> new_endpoints = getEndpoints(configuration);
+        templates.clear();
+        new_endpoints.values().forEach(urls -> urls.values().forEach(this::getTemplate));
+        
+        endpoints = new_endpoints;
         entities = getEntities(configuration);
     }
+
+    /**
+     * Get the compiled endpoint template.
+     * 
+     * @param url the endpoint template url
+     * 
+     * @return compiled template
+     */
+    UrlTemplate getTemplate(String url) {
+        return templates.computeIfAbsent(url, UrlTemplate::new);
+    }
     
     private Map<String, Map<String, String>> getEntities(NetworkConfiguration configuration) {
         final Map<String, Map<String, String>> entities = new HashMap();
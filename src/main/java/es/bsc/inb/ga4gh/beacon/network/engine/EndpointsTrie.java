@@ -0,0 +1,271 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.BeaconMap;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.Endpoint;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.configuration.RelatedEndpoint;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconMapResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable routing trie compiled from the beacon network map.
+ * 
+ * Every template path segment is a trie node ('{param}' segments are
+ * the wildcard nodes) and the template nodes keep the precomputed beacons'
+ * endpoints, so the request path is matched by a single walk over its segments.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+final class EndpointsTrie {
+
+    private final BeaconMapResponse map;
+    private final Map<String, Map<String, String>> endpoints;
+    
+    private final Node root = new Node(null);
+
+    private final static Node AMBIGUOUS = new Node(null);
+
+    private static class Node {
+        private final String label;
+        private Node[] children = new Node[0];
+        private Node param;
+
+        private Set<String> types; // typed endpoints of the template
+        private Map<String, Map.Entry<String, String>> routes;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Compile the trie.
+     * 
+     * @param map the beacon network map
+     * @param endpoints all beacons' endpoints from the EndpointsDefinitions
+     */
+    EndpointsTrie(BeaconMapResponse map, Map<String, Map<String, String>> endpoints) {
+        this.map = map;
+        this.endpoints = endpoints;
+
+        final List<Node> templates = new ArrayList();
+        
+        final BeaconMap beacon_map = map == null ? null : map.getResponse();
+        final Map<String, Endpoint> endpoint_sets = beacon_map == null ? null : beacon_map.getEndpointSets();
+        if (endpoint_sets != null) {
+            for (Map.Entry<String, Endpoint> entry : endpoint_sets.entrySet()) {
+                final Endpoint endpoint = entry.getValue();
+                String entryType = endpoint.getEntryType();
+                if (entryType == null) {
+                    entryType = entry.getKey();
+                }
+                
+                put(templates, endpoint.getRootUrl(), entryType);
+                put(templates, endpoint.getSingleEntryUrl(), entryType + ":" + entryType);
+                
+                final Map<String, RelatedEndpoint> related_endpoints = endpoint.getEndpoints();
+                if (related_endpoints != null) {
+                    for (Map.Entry<String, RelatedEndpoint> rel_entry : related_endpoints.entrySet()) {
+                        final RelatedEndpoint rel_endpoint = rel_entry.getValue();
+                        String relEntryType = rel_endpoint.getReturnedEntryType();
+                        if (relEntryType == null) {
+                            relEntryType = rel_entry.getKey();
+                        }
+                        put(templates, rel_endpoint.getUrl(), entryType + ":" + relEntryType);
+                    }
+                }
+            }
+        }
+        
+        for (Node template : templates) {
+            template.routes = Collections.unmodifiableMap(getRoutes(template.types));
+        }
+    }
+
+    /**
+     * Check whether the trie is compiled for the current configuration.
+     * 
+     * @param map the beacon network map
+     * @param endpoints all beacons' endpoints from the EndpointsDefinitions
+     * 
+     * @return true if the trie is up to date
+     */
+    boolean isCompiledFor(BeaconMapResponse map, Map<String, Map<String, String>> endpoints) {
+        return this.map == map && this.endpoints == endpoints;
+    }
+
+    /**
+     * Match the request path against the compiled templates.
+     * 
+     * @param path the request URI path
+     * 
+     * @return the matched beacons' endpoints by the beacon identifier
+     */
+    Map<String, Map.Entry<String, String>> match(String path) {
+        final Node node = find(root, path, 0);
+        if (node == null) {
+            return Collections.EMPTY_MAP;
+        }
+        if (node != AMBIGUOUS) {
+            return new HashMap(node.routes);
+        }
+
+        // several templates match the path
+        final Set<String> types = new HashSet();
+        collect(root, path, 0, types);
+        return getRoutes(types);
+    }
+
+    private Map<String, Map.Entry<String, String>> getRoutes(Set<String> types) {
+        final Map<String, Map.Entry<String, String>> routes = new HashMap();
+        for (Map.Entry<String, Map<String, String>> entry : endpoints.entrySet()) {
+            for (Map.Entry<String, String> url : entry.getValue().entrySet()) {
+                if (types.contains(url.getKey())) {
+                    routes.put(entry.getKey(), Map.entry(url.getKey(), url.getValue()));
+                }
+            }
+        }
+        return routes;
+    }
+
+    private void put(List<Node> templates, String url, String type) {
+        if (url == null) {
+            return;
+        }
+
+        final int scheme = url.indexOf("://");
+        final int start = scheme < 0 ? 0 : url.indexOf('/', scheme + 3);
+        if (start < 0) {
+            return;
+        }
+
+        Node node = root;
+        for (String segment : url.substring(start).split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                if (node.param == null) {
+                    node.param = new Node(segment);
+                }
+                node = node.param;
+            } else {
+                Node child = null;
+                for (Node n : node.children) {
+                    if (n.label.equals(segment)) {
+                        child = n;
+                        break;
+                    }
+                }
+                if (child == null) {
+                    child = new Node(segment);
+                    final Node[] children = new Node[node.children.length + 1];
+                    System.arraycopy(node.children, 0, children, 0, node.children.length);
+                    children[node.children.length] = child;
+                    node.children = children;
+                }
+                node = child;
+            }
+        }
+        
+        if (node.types == null) {
+            node.types = new HashSet();
+            templates.add(node);
+        }
+        node.types.add(type);
+    }
+
+    /**
+     * Find the template node that matches the rest of the path.
+     * 
+     * @return the template node, AMBIGUOUS if several templates match or null
+     */
+    private static Node find(Node node, String path, int pos) {
+        final int length = path.length();
+        while (pos < length && path.charAt(pos) == '/') {
+            pos++;
+        }
+        if (pos == length) {
+            return node.types != null ? node : null;
+        }
+
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = length;
+        }
+
+        Node found = null;
+        for (Node child : node.children) {
+            if (child.label.length() == end - pos && 
+                path.regionMatches(pos, child.label, 0, end - pos)) {
+                found = merge(found, find(child, path, end));
+            }
+        }
+        if (node.param != null) {
+            found = merge(found, find(node.param, path, end));
+        }
+        return found;
+    }
+
+    private static Node merge(Node found, Node node) {
+        return found == null ? node : node == null ? found : AMBIGUOUS;
+    }
+
+    private static void collect(Node node, String path, int pos, Set<String> types) {
+        final int length = path.length();
+        while (pos < length && path.charAt(pos) == '/') {
+            pos++;
+        }
+        if (pos == length) {
+            if (node.types != null) {
+                types.addAll(node.types);
+            }
+            return;
+        }
+
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = length;
+        }
+
+        for (Node child : node.children) {
+            if (child.label.length() == end - pos && 
+                path.regionMatches(pos, child.label, 0, end - pos)) {
+                collect(child, path, end, types);
+            }
+        }
+        if (node.param != null) {
+            collect(node.param, path, end, types);
+        }
+    }
+}
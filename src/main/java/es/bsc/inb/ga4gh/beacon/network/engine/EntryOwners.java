@@ -0,0 +1,193 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import es.bsc.inb.ga4gh.beacon.network.model.JsonRawValue;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded map of the entries' identifiers to the beacons that own them.
+ * 
+ * The owners are learned from the aggregated results, so the single entry
+ * requests (e.g. '/individuals/{id}') may be sent to the owner only.
+ * The map is a 2-way set associative table of the entries' hashes: 
+ * an entry replaces the less confirmed one in its set, and every replacement 
+ * halves the confirmations of the other, so the stale entries go away.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class EntryOwners {
+
+    private final static int MAX_HITS = 0xFF;
+    
+    // the number of results learned from every resultset
+    private final static int MAX_LEARNED = 100;
+
+    private long[] keys;
+    private int[] values; // beacon index << 8 | hits
+
+    private final Map<String, Integer> beacons = new HashMap();
+    private final List<String> beacon_ids = new ArrayList();
+
+    @PostConstruct
+    public void init() {
+        final int size = (int)Math.min(ConfigurationProperties.BN_ENTRY_OWNERS_SIZE_PROPERTY, 1 << 30);
+        final int capacity = size < 2 ? 0 : Integer.highestOneBit(size);
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Get the identifier field of the entry type records.
+     * 
+     * @param entry_type the entry type (e.g. 'individual', 'genomicVariant')
+     * 
+     * @return the identifier property name
+     */
+    public static String getIdProperty(String entry_type) {
+        return "genomicVariant".equals(entry_type) ? "variantInternalId" : "id";
+    }
+
+    /**
+     * Learn the owners of the entries returned by the beacons.
+     * Only the first MAX_LEARNED results of every resultset are inspected and
+     * the results spilled off the heap are skipped, so learning stays cheap
+     * for large responses.
+     * 
+     * @param entry_type the type of the returned entries
+     * @param resultsets beacons' resultsets
+     */
+    public void learn(String entry_type, List<BeaconResultset> resultsets) {
+        if (keys.length == 0) {
+            return;
+        }
+        final String[] path = {getIdProperty(entry_type)};
+        for (BeaconResultset resultset : resultsets) {
+            final List results = resultset.getResults();
+            if (resultset.getBeaconId() != null && results != null) {
+                for (int i = 0, n = Math.min(results.size(), MAX_LEARNED); i < n; i++) {
+                    final Object result = results.get(i);
+                    if (result instanceof JsonRawValue raw && raw.isMapped()) {
+                        continue;
+                    }
+                    if (JsonRecords.getValue(result, path) instanceof String id) {
+                        put(entry_type, id, resultset.getBeaconId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the known owner of the entry.
+     * 
+     * @param entry_type the entry type
+     * @param id the entry identifier
+     * 
+     * @return the beacon identifier or null if the owner is unknown
+     */
+    public synchronized String getOwner(String entry_type, String id) {
+        final int slot = find(hash(entry_type, id));
+        return slot < 0 ? null : beacon_ids.get(values[slot] >>> 8);
+    }
+
+    /**
+     * Confirm that the owner has returned the entry.
+     * 
+     * @param entry_type the entry type
+     * @param id the entry identifier
+     */
+    public synchronized void confirm(String entry_type, String id) {
+        final int slot = find(hash(entry_type, id));
+        if (slot >= 0 && (values[slot] & MAX_HITS) < MAX_HITS) {
+            values[slot]++;
+        }
+    }
+
+    /**
+     * Forget the owner that has not returned the entry.
+     * 
+     * @param entry_type the entry type
+     * @param id the entry identifier
+     */
+    public synchronized void forget(String entry_type, String id) {
+        final int slot = find(hash(entry_type, id));
+        if (slot >= 0) {
+            keys[slot] = 0;
+            values[slot] = 0;
+        }
+    }
+
+    private synchronized void put(String entry_type, String id, String beaconId) {
+        final long key = hash(entry_type, id);
+        final int beacon = beacons.computeIfAbsent(beaconId, k -> {
+            beacon_ids.add(k);
+            return beacon_ids.size() - 1;
+        });
+
+        final int set = (int)(key ^ (key >>> 32)) & (keys.length - 2);
+        for (int slot = set; slot < set + 2; slot++) {
+            if (keys[slot] == key) {
+                if (values[slot] >>> 8 != beacon) {
+                    values[slot] = beacon << 8;
+                }
+                return;
+            }
+        }
+
+        final int victim = keys[set] == 0 || (keys[set + 1] != 0 && 
+                (values[set] & MAX_HITS) <= (values[set + 1] & MAX_HITS)) ? set : set + 1;
+        final int other = victim ^ 1;
+        values[other] = (values[other] & ~MAX_HITS) | ((values[other] & MAX_HITS) >>> 1);
+        keys[victim] = key;
+        values[victim] = beacon << 8;
+    }
+
+    private int find(long key) {
+        if (keys.length > 0) {
+            final int set = (int)(key ^ (key >>> 32)) & (keys.length - 2);
+            if (keys[set] == key) {
+                return set;
+            }
+            if (keys[set + 1] == key) {
+                return set + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static long hash(String entry_type, String id) {
+        return ResultsDeduplicator.hash(entry_type + '\n' + id);
+    }
+}
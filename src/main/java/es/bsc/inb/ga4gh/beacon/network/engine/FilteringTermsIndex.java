@@ -0,0 +1,166 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconFilteringTermsResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconFilteringTermsResults;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.FilteringTerm;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfigUpdatedEvent;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfiguration;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.ObservesAsync;
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index of the filtering terms declared by the beacons.
+ * 
+ * Every beacon gets a bit position and every filtering term keeps the bitset
+ * of the beacons which declare it, so the beacons that can satisfy all
+ * the query filters are found by the bitsets intersection.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class FilteringTermsIndex {
+
+    @Inject
+    private NetworkConfiguration configuration;
+
+    private volatile Index index = new Index(Collections.EMPTY_MAP, new BitSet(), 
+            Collections.EMPTY_MAP, Collections.EMPTY_SET);
+
+    /**
+     * Immutable index snapshot.
+     * 
+     * @param beacons bit positions by the beacon identifier
+     * @param indexed beacons which declare their filtering terms
+     * @param terms beacons' bitsets by the filtering term identifier
+     * @param ontology terms declared as ontology ones (or with no type)
+     */
+    private record Index(Map<String, Integer> beacons, BitSet indexed, 
+            Map<String, BitSet> terms, Set<String> ontology) {}
+
+    /**
+     * Called when beacon network configuration has been updated.
+     * 
+     * @param event update event
+     */
+    public void onEvent(@ObservesAsync NetworkConfigUpdatedEvent event) {
+        index = build(configuration.getFilteringTerms());
+    }
+
+    private Index build(Map<String, BeaconFilteringTermsResponse> filtering_terms) {
+        final Map<String, Integer> beacons = new HashMap();
+        final BitSet indexed = new BitSet();
+        final Map<String, BitSet> terms = new HashMap();
+        final Set<String> ontology = new HashSet();
+
+        if (filtering_terms != null) {
+            for (Map.Entry<String, BeaconFilteringTermsResponse> entry : filtering_terms.entrySet()) {
+                final int position = beacons.size();
+                beacons.put(entry.getKey(), position);
+
+                final BeaconFilteringTermsResults results = entry.getValue().getResponse();
+                final List<FilteringTerm> beacon_terms = results == null ? null : results.getFilteringTerms();
+                if (beacon_terms != null && !beacon_terms.isEmpty()) {
+                    indexed.set(position);
+                    for (FilteringTerm term : beacon_terms) {
+                        final String id = term.getId();
+                        if (id != null) {
+                            terms.computeIfAbsent(id, k -> new BitSet()).set(position);
+                            final String type = term.getType();
+                            if (!"alphanumeric".equals(type) && !"customTerm".equals(type)) {
+                                ontology.add(id);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new Index(beacons, indexed, terms, ontology);
+    }
+
+    /**
+     * Find the beacons that can not satisfy the query filters.
+     * 
+     * Query filters are all mandatory, so the beacon is pruned when it declares 
+     * its filtering terms, but not some of the filters. Filters which are unknown 
+     * to every beacon are ignored, as well as the beacons which declare no filtering 
+     * terms at all. Ontology filters which include descendant terms (the default)
+     * are ignored too - the beacon may declare only the descendants of the term.
+     * 
+     * @param beacons the beacons matched for the query
+     * @param filter_ids the query filters' identifiers
+     * @param descendant_ids the query filters which include descendant terms
+     * 
+     * @return the beacons that should not be queried
+     */
+    public List<String> prune(Collection<String> beacons, List<String> filter_ids, 
+            List<String> descendant_ids) {
+        if (filter_ids.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+
+        final Index snapshot = index;
+
+        BitSet satisfied = null;
+        for (String filter_id : filter_ids) {
+            if (descendant_ids.contains(filter_id) && snapshot.ontology.contains(filter_id)) {
+                continue;
+            }
+            final BitSet term = snapshot.terms.get(filter_id);
+            if (term != null) {
+                if (satisfied == null) {
+                    satisfied = (BitSet)term.clone();
+                } else {
+                    satisfied.and(term);
+                }
+            }
+        }
+
+        if (satisfied == null) {
+            return Collections.EMPTY_LIST;
+        }
+
+        final List<String> pruned = new ArrayList();
+        for (String beaconId : beacons) {
+            final Integer position = snapshot.beacons.get(beaconId);
+            if (position != null && snapshot.indexed.get(position) && !satisfied.get(position)) {
+                pruned.add(beaconId);
+            }
+        }
+        return pruned;
+    }
+}
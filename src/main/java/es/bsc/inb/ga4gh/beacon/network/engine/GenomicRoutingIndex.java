@@ -0,0 +1,218 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfigUpdatedEvent;
+import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfiguration;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.ObservesAsync;
+import jakarta.inject.Inject;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routing index of the genomic variants' beacons by the assembly and 
+ * the reference sequence.
+ * 
+ * Beacons do not declare the assemblies they are built on in their metadata,
+ * so the index is built from the beacons' settings in the beacon network 
+ * configuration ('assemblyIds', 'referenceNames'). Beacons without these 
+ * hints are considered to cover everything.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class GenomicRoutingIndex {
+
+    public final static String ASSEMBLY_ID = "assemblyId";
+    public final static String REFERENCE_NAME = "referenceName";
+
+    @Inject
+    private NetworkConfiguration configuration;
+
+    private volatile Index index = new Index(Collections.EMPTY_MAP, 
+            new Dimension(new BitSet(), Collections.EMPTY_MAP), 
+            new Dimension(new BitSet(), Collections.EMPTY_MAP));
+
+    /**
+     * Beacons' bitsets by the normalized value.
+     * 
+     * @param hinted beacons which declare the values of this dimension
+     * @param values beacons' bitsets by the value
+     */
+    private record Dimension(BitSet hinted, Map<String, BitSet> values) {
+        
+        private boolean excludes(int position, String value) {
+            if (value == null || !hinted.get(position)) {
+                return false;
+            }
+            final BitSet beacons = values.get(value);
+            return beacons == null || !beacons.get(position);
+        }
+    }
+
+    /**
+     * Immutable index snapshot.
+     * 
+     * @param beacons bit positions by the beacon identifier
+     * @param assemblies assemblies dimension
+     * @param references reference sequences dimension
+     */
+    private record Index(Map<String, Integer> beacons, Dimension assemblies, Dimension references) {}
+
+    /**
+     * Called when beacon network configuration has been updated.
+     * 
+     * @param event update event
+     */
+    public void onEvent(@ObservesAsync NetworkConfigUpdatedEvent event) {
+        final Map<String, Integer> beacons = new HashMap();
+        final Dimension assemblies = new Dimension(new BitSet(), new HashMap());
+        final Dimension references = new Dimension(new BitSet(), new HashMap());
+
+        for (String beaconId : configuration.getEndpoints().keySet()) {
+            final JsonObject settings = configuration.getSettings(beaconId);
+            if (settings != null) {
+                final int position = beacons.size();
+                beacons.put(beaconId, position);
+                put(assemblies, position, settings.get("assemblyIds"), true);
+                put(references, position, settings.get("referenceNames"), false);
+            }
+        }
+        index = new Index(beacons, assemblies, references);
+    }
+
+    private void put(Dimension dimension, int position, JsonValue hints, boolean assembly) {
+        if (hints instanceof JsonArray array && !array.isEmpty()) {
+            dimension.hinted.set(position);
+            for (JsonValue hint : array) {
+                if (hint instanceof JsonString str) {
+                    final String value = assembly ? normalizeAssembly(str.getString()) 
+                            : normalizeReference(str.getString());
+                    dimension.values.computeIfAbsent(value, k -> new BitSet()).set(position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the beacons that can only return an empty result for the requested
+     * assembly and reference sequence.
+     * 
+     * @param beacons the beacons matched for the query
+     * @param parameters the query request parameters
+     * 
+     * @return the beacons that should not be queried
+     */
+    public List<String> prune(Collection<String> beacons, JsonObject parameters) {
+        final String assembly = parameters.get(ASSEMBLY_ID) instanceof JsonString str 
+                ? normalizeAssembly(str.getString()) : null;
+        final String reference = parameters.get(REFERENCE_NAME) instanceof JsonString str 
+                ? normalizeReference(str.getString()) : null;
+        
+        if (assembly == null && reference == null) {
+            return Collections.EMPTY_LIST;
+        }
+
+        final Index snapshot = index;
+
+        List<String> pruned = Collections.EMPTY_LIST;
+        for (String beaconId : beacons) {
+            final Integer position = snapshot.beacons.get(beaconId);
+            if (position != null && 
+               (snapshot.assemblies.excludes(position, assembly) || 
+                snapshot.references.excludes(position, reference))) {
+                if (pruned.isEmpty()) {
+                    pruned = new ArrayList();
+                }
+                pruned.add(beaconId);
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Normalize the assembly identifier, so the UCSC and GRC names are the same.
+     * 
+     * @param assembly the assembly identifier (e.g. 'GRCh38', 'hg38', 'GRCh38.p14')
+     * 
+     * @return normalized assembly identifier (e.g. 'grch38')
+     */
+    static String normalizeAssembly(String assembly) {
+        String id = assembly.trim().toLowerCase(Locale.ROOT);
+        final int patch = id.indexOf(".p"); // 'GRCh38.p14'
+        if (patch > 0) {
+            id = id.substring(0, patch);
+        }
+        return switch (id) {
+            case "hg19", "grch37" -> "grch37";
+            case "hg38", "grch38" -> "grch38";
+            default -> id;
+        };
+    }
+
+    /**
+     * Normalize the reference sequence name, so 'chr1', '1' and 'NC_000001.11'
+     * are the same.
+     * 
+     * @param reference the reference sequence name
+     * 
+     * @return normalized reference sequence name
+     */
+    static String normalizeReference(String reference) {
+        String name = reference.trim().toUpperCase(Locale.ROOT);
+        if (name.startsWith("NC_0000") && name.length() >= 9) {
+            final int dot = name.indexOf('.');
+            try {
+                final int chromosome = Integer.parseInt(name.substring(7, dot > 0 ? dot : name.length()));
+                return switch (chromosome) {
+                    case 23 -> "X";
+                    case 24 -> "Y";
+                    default -> Integer.toString(chromosome);
+                };
+            } catch (NumberFormatException ex) {
+                return name;
+            }
+        }
+        if (name.startsWith("NC_012920")) {
+            return "MT";
+        }
+        if (name.startsWith("CHR")) {
+            name = name.substring(3);
+        }
+        return "M".equals(name) ? "MT" : name;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.network.model.JsonRawValue;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.spi.JsonProvider;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParserFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Utility methods to access the properties of the results which may be
+ * kept as raw json, json objects or maps.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+final class JsonRecords {
+    
+    // Json static methods look the provider up on every call
+    final static JsonProvider PROVIDER = JsonProvider.provider();
+    private final static JsonParserFactory PARSER_FACTORY = PROVIDER.createParserFactory(null);
+
+    private JsonRecords() {}
+
+    /**
+     * Get the primitive property value of the result.
+     * 
+     * @param result the result (raw json, json object or map)
+     * @param path the property path (e.g. ["variation", "location", "start"])
+     * 
+     * @return String, BigDecimal or Boolean value or null
+     */
+    static Object getValue(Object result, String[] path) {
+        if (result instanceof JsonRawValue raw) {
+            return getValue(raw, path);
+        }
+        Object value = result;
+        for (String name : path) {
+            if (value instanceof JsonObject obj) {
+                value = obj.get(name);
+            } else if (value instanceof Map map) {
+                value = map.get(name);
+            } else {
+                return null;
+            }
+        }
+        if (value instanceof JsonString str) {
+            return str.getString();
+        } else if (value instanceof JsonNumber num) {
+            return num.bigDecimalValue();
+        } else if (value == JsonValue.TRUE || value == JsonValue.FALSE) {
+            return value == JsonValue.TRUE;
+        } else if (value instanceof Number num) {
+            return new BigDecimal(num.toString());
+        } else if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * Find the property in raw json without building the object.
+     * The json is parsed right from its UTF-8 bytes and the properties that 
+     * are not on the path are skipped.
+     */
+    private static Object getValue(JsonRawValue raw, String[] path) {
+        try (JsonParser parser = PARSER_FACTORY.createParser(
+                raw.getInputStream(), StandardCharsets.UTF_8)) {
+            for (String property : path) {
+                if (!parser.hasNext() || parser.next() != JsonParser.Event.START_OBJECT) {
+                    return null;
+                }
+                if (!find(parser, property)) {
+                    return null;
+                }
+            }
+            if (parser.hasNext()) {
+                switch(parser.next()) {
+                    case VALUE_STRING: return parser.getString();
+                    case VALUE_NUMBER: return parser.getBigDecimal();
+                    case VALUE_TRUE: return true;
+                    case VALUE_FALSE: return false;
+                }
+            }
+        } catch (Exception ex) {
+            Logger.getLogger(JsonRecords.class.getName()).log(
+                    Level.FINE, "error reading result property {0}: {1}", 
+                    new Object[]{String.join(".", path), ex.getMessage()});
+        }
+        return null;
+    }
+
+    /**
+     * Move the parser (positioned inside the object) to the property value.
+     * 
+     * @return true if the property was found
+     */
+    private static boolean find(JsonParser parser, String property) {
+        while (parser.hasNext()) {
+            final JsonParser.Event event = parser.next();
+            if (event != JsonParser.Event.KEY_NAME) {
+                return false;
+            }
+            if (property.equals(parser.getString())) {
+                return true;
+            }
+            final JsonParser.Event value = parser.next();
+            if (value == JsonParser.Event.START_OBJECT) {
+                parser.skipObject();
+            } else if (value == JsonParser.Event.START_ARRAY) {
+                parser.skipArray();
+            }
+        }
+        return false;
+    }
+}
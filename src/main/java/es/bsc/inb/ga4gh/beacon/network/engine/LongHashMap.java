@@ -0,0 +1,112 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+/**
+ * Compact open addressing (linear probing) hash map of primitive long keys 
+ * to long values. Values are expected to be non-negative.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+final class LongHashMap {
+    
+    public final static long NO_VALUE = -1;
+
+    private long[] keys;
+    private long[] values;
+    private boolean zero; // the 0 key is kept apart as it marks free slots
+    private long zero_value;
+    private int size;
+    private int mask;
+
+    LongHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return zero ? size + 1 : size;
+    }
+
+    /**
+     * Put the value if there is no value for the key.
+     * 
+     * @param key the key
+     * @param value the value to put
+     * 
+     * @return the current value for the key or NO_VALUE if it has been put
+     */
+    public long putIfAbsent(long key, long value) {
+        if (key == 0) {
+            if (zero) {
+                return zero_value;
+            }
+            zero = true;
+            zero_value = value;
+            return NO_VALUE;
+        }
+        int i = mix(key) & mask;
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask >> 1)) {
+            rehash();
+        }
+        return NO_VALUE;
+    }
+
+    private void rehash() {
+        final long[] old_keys = keys;
+        final long[] old_values = values;
+        keys = new long[old_keys.length << 1];
+        values = new long[old_keys.length << 1];
+        mask = keys.length - 1;
+        for (int j = 0; j < old_keys.length; j++) {
+            final long key = old_keys[j];
+            if (key != 0) {
+                int i = mix(key) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = old_values[j];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import jakarta.json.Json;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The opaque continuation token of the beacon network pagination.
+ * 
+ * The token keeps the offsets of every beacon's resultsets already returned
+ * to the client. Beacons apply 'skip' and 'limit' to every (dataset) resultset,
+ * so every resultset has its own offset, while the beacon is asked to skip
+ * the records of its least advanced resultset. The resultsets that have no 
+ * more results are marked as exhausted and the beacons with all resultsets 
+ * exhausted are not queried for the following pages.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public final class PaginationCursor {
+    
+    final static int EXHAUSTED = -1;
+
+    // beacon id -> resultset id -> offset
+    private final Map<String, Map<String, Integer>> offsets;
+    
+    public PaginationCursor(Map<String, Map<String, Integer>> offsets) {
+        final Map<String, Map<String, Integer>> map = new LinkedHashMap();
+        for (Map.Entry<String, Map<String, Integer>> entry : offsets.entrySet()) {
+            map.put(entry.getKey(), Collections.unmodifiableMap(new LinkedHashMap(entry.getValue())));
+        }
+        this.offsets = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Get the number of the beacon's records to skip: the offset of its least
+     * advanced resultset.
+     * 
+     * @param beaconId the beacon identifier
+     * 
+     * @return the beacon's offset (0 if the beacon is unknown)
+     */
+    public int getOffset(String beaconId) {
+        final Map<String, Integer> resultsets = offsets.get(beaconId);
+        if (resultsets == null) {
+            return 0;
+        }
+        int offset = Integer.MAX_VALUE;
+        for (Integer value : resultsets.values()) {
+            if (value >= 0) {
+                offset = Math.min(offset, value);
+            }
+        }
+        return offset == Integer.MAX_VALUE ? 0 : offset;
+    }
+
+    /**
+     * Get the number of the beacon's resultset records already returned.
+     * 
+     * @param beaconId the beacon identifier
+     * @param resultsetId the resultset identifier (may be null)
+     * 
+     * @return the resultset's offset, EXHAUSTED or the beacon's offset if 
+     *         the resultset is unknown
+     */
+    int getOffset(String beaconId, String resultsetId) {
+        final Map<String, Integer> resultsets = offsets.get(beaconId);
+        final Integer offset = resultsets == null ? null 
+                : resultsets.get(resultsetId == null ? "" : resultsetId);
+        return offset != null ? offset : getOffset(beaconId);
+    }
+
+    /**
+     * Get the offsets of the beacon's resultsets.
+     * 
+     * @param beaconId the beacon identifier
+     * 
+     * @return the offsets by the resultset id or null if the beacon is unknown
+     */
+    Map<String, Integer> getOffsets(String beaconId) {
+        return offsets.get(beaconId);
+    }
+
+    public boolean isExhausted(String beaconId) {
+        final Map<String, Integer> resultsets = offsets.get(beaconId);
+        return resultsets != null && !resultsets.isEmpty() && 
+               resultsets.values().stream().allMatch(offset -> offset == EXHAUSTED);
+    }
+
+    /**
+     * Check whether all the beacons are exhausted.
+     * 
+     * @return true if there are no more pages
+     */
+    public boolean isLast() {
+        return offsets.keySet().stream().allMatch(this::isExhausted);
+    }
+
+    /**
+     * Create the cursor for the next page.
+     * 
+     * @param next the resultsets' offsets of the beacons queried for the page
+     * 
+     * @return the cursor for the next page
+     */
+    PaginationCursor next(Map<String, Map<String, Integer>> next) {
+        final Map<String, Map<String, Integer>> map = new LinkedHashMap(offsets);
+        for (Map.Entry<String, Map<String, Integer>> entry : next.entrySet()) {
+            if (!isExhausted(entry.getKey())) {
+                map.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new PaginationCursor(map);
+    }
+
+    /**
+     * Encode the cursor into the url safe token.
+     * 
+     * @return the token
+     */
+    public String encode() {
+        final JsonObjectBuilder builder = Json.createObjectBuilder();
+        offsets.forEach((beacon_id, resultsets) -> {
+            final JsonObjectBuilder b = Json.createObjectBuilder();
+            resultsets.forEach(b::add);
+            builder.add(beacon_id, b);
+        });
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                builder.build().toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode the cursor from the token.
+     * 
+     * @param token the token produced by encode()
+     * 
+     * @return the decoded cursor or null if the token is invalid
+     */
+    public static PaginationCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try (JsonReader reader = Json.createReader(new StringReader(new String(
+                Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)))) {
+            final JsonObject object = reader.readObject();
+            final Map<String, Map<String, Integer>> offsets = new LinkedHashMap();
+            for (Map.Entry<String, JsonValue> entry : object.entrySet()) {
+                if (entry.getValue() instanceof JsonObject obj) {
+                    final Map<String, Integer> resultsets = new LinkedHashMap();
+                    for (Map.Entry<String, JsonValue> e : obj.entrySet()) {
+                        if (e.getValue() instanceof JsonNumber offset) {
+                            resultsets.put(e.getKey(), Math.max(EXHAUSTED, offset.intValue()));
+                        }
+                    }
+                    offsets.put(entry.getKey(), resultsets);
+                }
+            }
+            return new PaginationCursor(offsets);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.SchemaPerEntity;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.AbstractBeaconResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconErrorResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponseMeta;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the aggregated response progressively, as beacons respond.
+ * 
+ * Every beacon's resultsets (or collections) are appended to the response in 
+ * the order the beacons answer and flushed to the client. The beacons that
+ * do not answer within the discard timeout after the previous one are 
+ * discarded. The 'info', 'responseSummary' and 'meta' (which depends on the 
+ * schemas returned by the beacons) are written the last.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class ProgressiveResponseWriter implements StreamingOutput {
+
+    private final static Jsonb JSONB = JsonbBuilder.create();
+
+    private final BeaconNetworkResponseBuilder builder;
+    private final BeaconResponseMeta meta;
+    private final String include_resultset_responses;
+    private final List<String> not_queried;
+    private final List<CompletableFuture<AbstractBeaconResponse>> responses;
+    
+    private OutputStream out;
+    private Writer writer;
+    
+    private Boolean collections; // null until the response type is known
+    private boolean empty;
+
+    public ProgressiveResponseWriter(
+            BeaconNetworkResponseBuilder builder,
+            BeaconResponseMeta meta,
+            String include_resultset_responses,
+            List<String> not_queried,
+            List<CompletableFuture<AbstractBeaconResponse>> responses) {
+
+        this.builder = builder;
+        this.meta = meta;
+        this.include_resultset_responses = include_resultset_responses;
+        this.not_queried = not_queried;
+        this.responses = responses;
+    }
+
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        out = RawResultsetsResponseWriter.unflushable(stream);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        writer.write('{');
+
+        final BlockingQueue<Optional<AbstractBeaconResponse>> completed = new LinkedBlockingQueue();
+        for (CompletableFuture<AbstractBeaconResponse> response : responses) {
+            response.whenComplete((res, ex) -> completed.add(Optional.ofNullable(res)));
+        }
+
+        final BeaconResponseAccumulator summary = new BeaconResponseAccumulator();
+        summary.addNotQueried(not_queried);
+
+        // errors are reported as resultsets, so they wait for the response type
+        final List<BeaconResultset> errors = new ArrayList();
+
+        for (int i = 0, n = responses.size(); i < n; i++) {
+            final Optional<AbstractBeaconResponse> response;
+            try {
+                // the same as in the batch mode, every beacon has its own discard timeout
+                response = completed.poll(ConfigurationProperties.BN_DISCARD_REQUEST_TIMEOUT_PROPERTY, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (response == null) {
+                Logger.getLogger(ProgressiveResponseWriter.class.getName()).log(
+                        Level.INFO, "{0} beacons responses discarded", n - i);
+                break;
+            }
+            if (response.isEmpty()) {
+                continue;
+            }
+            
+            final AbstractBeaconResponse res = response.get();
+            final BeaconResponseAccumulator accumulator = 
+                    builder.accumulate(include_resultset_responses, res);
+            if (res instanceof BeaconErrorResponse) {
+                if (collections == null) {
+                    errors.addAll(accumulator.getResultsets());
+                } else if (!collections) {
+                    write(accumulator.getResultsets());
+                }
+            } else if (res instanceof BeaconResponse) {
+                if (collections == null) {
+                    open(accumulator.hasCollections());
+                    if (!collections) {
+                        write(errors);
+                    }
+                    errors.clear();
+                }
+                if (collections == accumulator.hasCollections()) {
+                    summary.combineSummary(accumulator);
+                    summary.addReturnedSchemas(accumulator.getReturnedSchemas());
+                    if (collections) {
+                        writeCollections(accumulator.getCollections());
+                    } else {
+                        write(accumulator.getResultsets());
+                    }
+                }
+            }
+            writer.flush();
+            stream.flush();
+        }
+
+        if (collections == null) {
+            open(false);
+            write(errors);
+        }
+        
+        writer.write("]}");
+        if (!not_queried.isEmpty()) {
+            writer.write(",\"info\":");
+            writer.write(JSONB.toJson(Map.of("notQueried", not_queried)));
+        }
+        writer.write(",\"responseSummary\":");
+        writer.write(JSONB.toJson(summary.getResponseSummary()));
+
+        final List<SchemaPerEntity> schemas = summary.getReturnedSchemas();
+        if (!schemas.isEmpty()) {
+            meta.setReturnedSchemas(schemas);
+        }
+        writer.write(",\"meta\":");
+        writer.write(JSONB.toJson(meta));
+        writer.write('}');
+        writer.flush();
+        stream.flush();
+    }
+    
+    private void open(boolean collections) throws IOException {
+        this.collections = collections;
+        this.empty = true;
+        writer.write(collections ? "\"response\":{\"collections\":[" 
+                                 : "\"response\":{\"resultSets\":[");
+    }
+
+    private void write(List<BeaconResultset> resultsets) throws IOException {
+        for (BeaconResultset resultset : resultsets) {
+            if (!empty) {
+                writer.write(',');
+            }
+            empty = false;
+            RawResultsetsResponseWriter.write(out, writer, resultset);
+        }
+    }
+    
+    private void writeCollections(List list) throws IOException {
+        for (Object collection : list) {
+            if (!empty) {
+                writer.write(',');
+            }
+            empty = false;
+            writer.write(JSONB.toJson(collection));
+        }
+    }
+}
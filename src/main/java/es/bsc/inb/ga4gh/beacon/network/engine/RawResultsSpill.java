@@ -0,0 +1,167 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.AbstractBeaconResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsets;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsetsResponse;
+import es.bsc.inb.ga4gh.beacon.network.model.JsonRawValue;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves beacon's raw json results from the heap into a memory-mapped temporary
+ * segment file.
+ * 
+ * All the beacon's results are written into the segment file as UTF-8 bytes 
+ * and replaced by the values that refer the mapped segment. The file is deleted
+ * right after it has been mapped, so the segment lives as long as its results.
+ * 
+ * Note that the response is spilled only after it has been fully read, so
+ * the spill does not lower the peak heap usage of a single beacon response,
+ * but only the heap held by the responses kept for the aggregation.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public final class RawResultsSpill {
+    
+    private RawResultsSpill() {}
+
+    /**
+     * Get the size of the raw results kept on the heap.
+     * 
+     * @param response the beacon response
+     * 
+     * @return the number of bytes of raw results
+     */
+    public static long size(AbstractBeaconResponse response) {
+        long size = 0;
+        for (List results : getResults(response)) {
+            for (Object result : results) {
+                if (result instanceof JsonRawValue raw && !raw.isMapped()) {
+                    size += raw.length();
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Spill the beacon response raw results into a memory-mapped segment file.
+     * 
+     * @param response the beacon response
+     * 
+     * @throws IOException 
+     */
+    public static void spill(AbstractBeaconResponse response) throws IOException {
+        final List<List> list = getResults(response);
+        if (list.isEmpty()) {
+            return;
+        }
+
+        final Path file = Files.createTempFile("beacon-network-", ".spill");
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, 
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+
+        try (channel) {
+
+            // offsets and lengths of the written values
+            final List<long[]> ranges = new ArrayList();
+            long position = 0;
+            final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 65536);
+            for (List results : list) {
+                final long[] range = new long[results.size() * 2];
+                for (int i = 0, n = results.size(); i < n; i++) {
+                    final Object result = results.get(i);
+                    if (result instanceof JsonRawValue raw && !raw.isMapped()) {
+                        raw.writeTo(out);
+                        range[i * 2] = position;
+                        range[i * 2 + 1] = raw.length();
+                        position += raw.length();
+                    } else {
+                        range[i * 2] = -1;
+                    }
+                }
+                ranges.add(range);
+            }
+            out.flush();
+            
+            if (position > Integer.MAX_VALUE) {
+                return; // too large to be mapped as a single segment
+            }
+
+            final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+            for (int i = 0, n = list.size(); i < n; i++) {
+                final List results = list.get(i);
+                final long[] range = ranges.get(i);
+                for (int j = 0, m = results.size(); j < m; j++) {
+                    if (range[j * 2] >= 0) {
+                        results.set(j, new JsonRawValue(segment, (int)range[j * 2], (int)range[j * 2 + 1]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get all the resultsets' results lists which contain raw json values.
+     */
+    private static List<List> getResults(AbstractBeaconResponse response) {
+        final List<List> list = new ArrayList();
+        if (response instanceof BeaconResultsetsResponse res) {
+            final BeaconResultsets resultsets = res.getResponse();
+            if (resultsets != null && resultsets.getResultSets() != null) {
+                for (Object o : resultsets.getResultSets()) {
+                    if (o instanceof BeaconResultset resultset) {
+                        final List results = resultset.getResults();
+                        if (results != null && !results.isEmpty() && 
+                            results.get(0) instanceof JsonRawValue) {
+                            list.add(results);
+                        }
+                    }
+                }
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsets;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsetsResponse;
+import es.bsc.inb.ga4gh.beacon.network.model.JsonRawValue;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes aggregated resultsets response which results are kept as raw json.
+ * 
+ * Everything but the results is serialized via JSON-B, while the results
+ * are spliced into the output as they were received from the beacons.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class RawResultsetsResponseWriter implements StreamingOutput {
+
+    private final static Jsonb JSONB = JsonbBuilder.create();
+    
+    private final BeaconResultsetsResponse response;
+    
+    public RawResultsetsResponseWriter(BeaconResultsetsResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        final OutputStream out = unflushable(stream);
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("{\"meta\":");
+        writer.write(JSONB.toJson(response.getMeta()));
+        if (response.getResponseSummary() != null) {
+            writer.write(",\"responseSummary\":");
+            writer.write(JSONB.toJson(response.getResponseSummary()));
+        }
+        if (response.getInfo() != null) {
+            writer.write(",\"info\":");
+            writer.write(JSONB.toJson(response.getInfo()));
+        }
+        if (response.getBeaconHandovers() != null) {
+            writer.write(",\"beaconHandovers\":");
+            writer.write(JSONB.toJson(response.getBeaconHandovers()));
+        }
+        final BeaconResultsets resultsets = response.getResponse();
+        if (resultsets != null) {
+            writer.write(",\"response\":{\"resultSets\":[");
+            final List<BeaconResultset> list = resultsets.getResultSets();
+            if (list != null) {
+                for (int i = 0, n = list.size(); i < n; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    write(out, writer, list.get(i));
+                }
+            }
+            writer.write("]}");
+        }
+        writer.write('}');
+        writer.flush();
+        stream.flush();
+    }
+    
+    /**
+     * Wrap the stream so flushing the writer doesn't flush the underlying stream.
+     * Spilled results are written directly to the stream, so the writer is 
+     * flushed before each of them.
+     * 
+     * @param stream the output stream to wrap
+     * 
+     * @return the stream which flush() does nothing
+     */
+    static OutputStream unflushable(OutputStream stream) {
+        return new FilterOutputStream(stream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+            @Override
+            public void flush() {}
+        };
+    }
+
+    /**
+     * Write the resultset splicing its raw results into the output.
+     * 
+     * @param out the stream to write buffered raw results to
+     * @param writer the writer over the same stream
+     * @param resultset the resultset to write
+     * 
+     * @throws IOException 
+     */
+    static void write(OutputStream out, Writer writer, BeaconResultset resultset) throws IOException {
+        final String json = JSONB.toJson(copy(resultset));
+        writer.write(json, 0, json.length() - 1); // skip closing '}'
+        final List results = resultset.getResults();
+        if (results != null) {
+            if (json.length() > 2) {
+                writer.write(',');
+            }
+            writer.write("\"results\":[");
+            for (int i = 0, n = results.size(); i < n; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                final Object result = results.get(i);
+                if (result instanceof JsonRawValue raw) {
+                    writer.flush();
+                    raw.writeTo(out);
+                } else {
+                    writer.write(JSONB.toJson(result));
+                }
+            }
+            writer.write(']');
+        }
+        writer.write('}');
+    }
+    
+    /**
+     * Copy the resultset without results.
+     * 
+     * @param resultset the resultset to copy
+     * 
+     * @return the resultset copy without results
+     */
+    private static BeaconResultset copy(BeaconResultset resultset) {
+        final BeaconResultset copy = new BeaconResultset();
+        copy.setId(resultset.getId());
+        copy.setSetType(resultset.getSetType());
+        copy.setBeaconId(resultset.getBeaconId());
+        copy.setExists(resultset.getExists());
+        copy.setResultsCount(resultset.getResultsCount());
+        copy.setInfo(resultset.getInfo());
+        copy.setResultsHandovers(resultset.getResultsHandovers());
+        return copy;
+    }
+    
+    /**
+     * Check whether the response contains raw json results.
+     * 
+     * @param response aggregated response
+     * 
+     * @return true if some resultset results are raw json
+     */
+    public static boolean hasRawResults(BeaconResultsetsResponse response) {
+        final BeaconResultsets resultsets = response.getResponse();
+        if (resultsets != null) {
+            final List<BeaconResultset> list = resultsets.getResultSets();
+            if (list != null) {
+                for (BeaconResultset resultset : list) {
+                    final List results = resultset.getResults();
+                    if (results != null && !results.isEmpty() && 
+                        results.get(0) instanceof JsonRawValue) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
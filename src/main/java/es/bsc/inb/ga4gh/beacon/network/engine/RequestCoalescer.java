@@ -0,0 +1,127 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestMeta;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.requests.BeaconRequestQuery;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponse;
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces identical aggregations being executed at the same time.
+ * 
+ * The first request (the leader) queries the beacons, while identical requests 
+ * that arrive before the leader finishes wait for its aggregated response. 
+ * Requests are identical when they have the same canonical query, page cursor 
+ * and authorization.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+@ApplicationScoped
+public class RequestCoalescer {
+
+    @Inject
+    private BeaconNetworkRequestAnalyzer requestAnalyzer;
+
+    private final Map<String, CompletableFuture<BeaconResponse>> flights = new ConcurrentHashMap();
+
+    /**
+     * Get the key of the client's request.
+     * 
+     * @param request the client's request
+     * @param meta beacon network request metadata
+     * @param query beacon network query
+     * @param canonical the canonical query
+     * 
+     * @return the request key or null if the request should not be coalesced
+     */
+    public String getKey(HttpServletRequest request, BeaconRequestMeta meta, 
+            BeaconRequestQuery query, CanonicalQuery canonical) {
+        
+        if (!ConfigurationProperties.BN_COALESCING_PROPERTY ||
+             ConfigurationProperties.BN_PROGRESSIVE_RESPONSE_PROPERTY) {
+            return null;
+        }
+        final MessageDigest digest = requestAnalyzer.getScopeDigest(request, meta, query, canonical);
+        return digest == null ? null : 
+                Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    /**
+     * Join the identical aggregation or start the new one.
+     * 
+     * @param key the request key
+     * @param flight the future of the aggregation to be started
+     * 
+     * @return the future of the identical aggregation being executed 
+     * or null if the request should execute the aggregation itself
+     */
+    public CompletableFuture<BeaconResponse> join(String key, CompletableFuture<BeaconResponse> flight) {
+        return flights.putIfAbsent(key, flight);
+    }
+
+    /**
+     * Finish the aggregation started by the request.
+     * Waiting requests are cancelled if the aggregation has not been completed.
+     * 
+     * @param key the request key
+     * @param flight the future of the aggregation
+     */
+    public void land(String key, CompletableFuture<BeaconResponse> flight) {
+        flights.remove(key, flight);
+        flight.cancel(false);
+    }
+
+    /**
+     * Wait for the identical aggregation to be completed.
+     * No own timeout is used - the leader's beacons requests are already timed
+     * out and the flight is always landed (completed or cancelled) at the end.
+     * 
+     * @param flight the future of the identical aggregation
+     * 
+     * @return the aggregated response or null if the aggregation failed
+     */
+    public BeaconResponse follow(CompletableFuture<BeaconResponse> flight) {
+        try {
+            return flight.get();
+        } catch (Exception ex) {
+            Logger.getLogger(RequestCoalescer.class.getName()).log(
+                    Level.INFO, "coalesced request failed {0}", ex.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.ws.rs.core.HttpHeaders;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * The copy of the request properties needed to query the beacons after the
+ * client's request has been completed.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class RequestSnapshot extends HttpServletRequestWrapper {
+    
+    private final String method;
+    private final String path_info;
+    private final String query_string;
+    private final StringBuffer request_url;
+    private final List<String> authorization;
+
+    public RequestSnapshot(HttpServletRequest request) {
+        super(request);
+        
+        method = request.getMethod();
+        path_info = request.getPathInfo();
+        query_string = request.getQueryString();
+        request_url = request.getRequestURL();
+        
+        final Enumeration<String> headers = request.getHeaders(HttpHeaders.AUTHORIZATION);
+        authorization = headers == null ? Collections.EMPTY_LIST : Collections.list(headers);
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return path_info;
+    }
+
+    @Override
+    public String getQueryString() {
+        return query_string;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer(request_url);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if (HttpHeaders.AUTHORIZATION.equalsIgnoreCase(name)) {
+            return authorization.isEmpty() ? null : authorization.get(0);
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        if (HttpHeaders.AUTHORIZATION.equalsIgnoreCase(name)) {
+            return Collections.enumeration(authorization);
+        }
+        return Collections.emptyEnumeration();
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.network.model.JsonRawValue;
+import jakarta.json.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collapses the same results returned by different beacons.
+ * 
+ * Results are identified by the 64-bit hash of their 'id' ("id" mode) or 
+ * of their whole content ("content" mode). The first copy of the result is
+ * kept and, when duplicates were found, gets the 'beaconIds' list of all the
+ * beacons that returned it. Results without an 'id' are never collapsed 
+ * in the "id" mode. The hash only finds the candidate, which 'id' (or content)
+ * is compared with the kept one, so the hash collisions are never collapsed.
+ * 
+ * Deduplication is applied to the already paginated results, so the page 
+ * may be shorter than the limit, while the resultsets' counts and the next
+ * page offsets still include the collapsed results.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public final class ResultsDeduplicator {
+    
+    public final static String ID_MODE = "id";
+    public final static String CONTENT_MODE = "content";
+
+    private final static String[] ID = {"id"};
+
+    private ResultsDeduplicator() {}
+
+    /**
+     * Remove duplicated results from the resultsets.
+     * 
+     * @param resultsets the aggregated resultsets
+     * @param mode the deduplication mode ("id" or "content")
+     */
+    public static void deduplicate(List<BeaconResultset> resultsets, String mode) {
+        final boolean content = CONTENT_MODE.equals(mode);
+        
+        int expected = 0;
+        for (BeaconResultset resultset : resultsets) {
+            if (resultset.getResults() != null) {
+                expected += resultset.getResults().size();
+            }
+        }
+        
+        // hash -> the kept result position (resultset index << 32 | result index)
+        final LongHashMap index = new LongHashMap(expected);
+        
+        // kept result position -> beacons that returned the result
+        final Map<Long, Set<String>> collapsed = new HashMap();
+
+        for (int i = 0, n = resultsets.size(); i < n; i++) {
+            final BeaconResultset resultset = resultsets.get(i);
+            final List results = resultset.getResults();
+            if (results == null || results.isEmpty()) {
+                continue;
+            }
+            final List kept = new ArrayList(results.size());
+            for (Object result : results) {
+                final String key = getKey(result, content);
+                final long hash = hash(key);
+                if (hash != 0) {
+                    final long position = ((long)i << 32) | kept.size();
+                    final long original = index.putIfAbsent(hash, position);
+                    if (original != LongHashMap.NO_VALUE && 
+                        key.equals(getKey(get(resultsets, kept, i, original), content))) {
+                        collapsed.computeIfAbsent(original, p -> {
+                            final Set<String> ids = new LinkedHashSet();
+                            ids.add(resultsets.get((int)(p >>> 32)).getBeaconId());
+                            return ids;
+                        }).add(resultset.getBeaconId());
+                        continue;
+                    }
+                }
+                kept.add(result);
+            }
+            if (kept.size() < results.size()) {
+                resultset.setResults(kept);
+            }
+        }
+
+        for (Map.Entry<Long, Set<String>> entry : collapsed.entrySet()) {
+            final long position = entry.getKey();
+            final List results = resultsets.get((int)(position >>> 32)).getResults();
+            final int idx = (int)position;
+            results.set(idx, setBeaconIds(results.get(idx), entry.getValue()));
+        }
+    }
+
+    /**
+     * Add the 'beaconIds' property to the result.
+     * 
+     * @param result the result (raw json, json object or map)
+     * @param beacon_ids beacons that returned the result
+     * 
+     * @return the result with 'beaconIds' property
+     */
+    private static Object setBeaconIds(Object result, Set<String> beacon_ids) {
+        beacon_ids.remove(null);
+        if (result instanceof JsonRawValue raw) {
+            final String json = raw.toString().strip();
+            if (json.startsWith("{")) {
+                final StringBuilder sb = new StringBuilder(json.length() + 64);
+                sb.append("{\"beaconIds\":");
+                sb.append(JsonRecords.PROVIDER.createArrayBuilder(beacon_ids).build().toString());
+                final String tail = json.substring(1).strip();
+                if (!tail.startsWith("}")) {
+                    sb.append(',');
+                }
+                sb.append(tail);
+                return new JsonRawValue(sb.toString());
+            }
+        } else if (result instanceof JsonObject obj) {
+            return JsonRecords.PROVIDER.createObjectBuilder(obj)
+                    .add("beaconIds", JsonRecords.PROVIDER.createArrayBuilder(beacon_ids))
+                    .build();
+        } else if (result instanceof Map map) {
+            final Map copy = new LinkedHashMap(map);
+            copy.put("beaconIds", new ArrayList(beacon_ids));
+            return copy;
+        }
+        return result;
+    }
+
+    /**
+     * Get the kept result by its position.
+     * 
+     * @param resultsets the aggregated resultsets
+     * @param kept the results kept so far for the current resultset
+     * @param current the index of the current resultset
+     * @param position the kept result position
+     * 
+     * @return the kept result
+     */
+    private static Object get(List<BeaconResultset> resultsets, List kept, 
+            int current, long position) {
+        final int i = (int)(position >>> 32);
+        return (i == current ? kept : resultsets.get(i).getResults()).get((int)position);
+    }
+
+    /**
+     * Get the value the results are compared by.
+     * 
+     * @param result the result
+     * @param content whether the results are compared by the content
+     * 
+     * @return the result's 'id' (or content) or null if there is no 'id'
+     */
+    private static String getKey(Object result, boolean content) {
+        if (content) {
+            return result == null ? null : result.toString();
+        }
+        return JsonRecords.getValue(result, ID) instanceof String id ? id : null;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the string.
+     * 
+     * @param value the string to hash
+     * 
+     * @return the hash value or 0 for the null value
+     */
+    static long hash(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
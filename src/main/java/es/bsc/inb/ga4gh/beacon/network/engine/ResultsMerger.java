@@ -0,0 +1,212 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sorted beacons' results by the sort key defined for the entry type.
+ * 
+ * Sort keys are defined via BEACON_NETWORK_SORT_KEYS property as a comma
+ * separated list of 'entryType=property.path' (e.g. 'individual=id').
+ * Every resultset's results are sorted by the key and the first 'limit' 
+ * records are chosen with the k-way (heap) merge of all the resultsets.
+ * The records that are not among the first 'limit' ones are removed.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public final class ResultsMerger {
+
+    private final static Map<String, String[]> SORT_KEYS = parse(
+            ConfigurationProperties.BN_SORT_KEYS_PROPERTY);
+    
+    /**
+     * Numbers go before strings and booleans, records without the key go last.
+     */
+    private final static Comparator<Object> KEY_COMPARATOR = (k1, k2) -> {
+        final int r1 = rank(k1);
+        final int r2 = rank(k2);
+        if (r1 != r2) {
+            return r1 - r2;
+        }
+        return switch(r1) {
+            case 0 -> ((BigDecimal)k1).compareTo((BigDecimal)k2);
+            case 1 -> ((String)k1).compareTo((String)k2);
+            case 2 -> Boolean.compare((Boolean)k1, (Boolean)k2);
+            default -> 0;
+        };
+    };
+
+    private ResultsMerger() {}
+    
+    /**
+     * Get the sort key defined for the entry type.
+     * 
+     * @param entry_type the endpoint entry type (e.g. 'individual' or 
+     * 'individual:genomicVariant')
+     * 
+     * @return the sort key property path or null if no sort key defined
+     */
+    public static String[] getSortKey(String entry_type) {
+        if (entry_type == null) {
+            return null;
+        }
+        final int idx = entry_type.lastIndexOf(':');
+        return SORT_KEYS.get(entry_type.substring(idx + 1));
+    }
+
+    /**
+     * Sort the resultsets' results and keep only the first 'limit' records.
+     * 
+     * @param resultsets the aggregated resultsets
+     * @param sort_key the sort key property path
+     * @param limit maximum number of records to keep (0 - no limit)
+     */
+    public static void merge(List<BeaconResultset> resultsets, String[] sort_key, int limit) {
+        final int[] taken = select(resultsets, sort_key, limit);
+        if (limit > 0) {
+            for (int i = 0, n = resultsets.size(); i < n; i++) {
+                final BeaconResultset resultset = resultsets.get(i);
+                final List results = resultset.getResults();
+                if (results != null && taken[i] < results.size()) {
+                    resultset.setResults(new ArrayList(results.subList(0, taken[i])));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort the resultsets' results and find how many records of each resultset 
+     * are among the first 'n' records of all the resultsets.
+     * 
+     * @param resultsets the aggregated resultsets
+     * @param sort_key the sort key property path
+     * @param n the number of first records to select
+     * 
+     * @return the number of selected records for every resultset
+     */
+    static int[] select(List<BeaconResultset> resultsets, String[] sort_key, int n) {
+        final List<Stream> streams = new ArrayList();
+        for (int i = 0, m = resultsets.size(); i < m; i++) {
+            final List results = resultsets.get(i).getResults();
+            if (results != null && !results.isEmpty()) {
+                streams.add(new Stream(i, results, sort_key));
+            }
+        }
+
+        // take the first 'n' heads from the k streams
+        final int[] taken = new int[resultsets.size()];
+        final PriorityQueue<Stream> heap = new PriorityQueue<>(Math.max(1, streams.size()),
+                (s1, s2) -> KEY_COMPARATOR.compare(s1.head(), s2.head()));
+        heap.addAll(streams);
+        for (int i = 0; i < n && !heap.isEmpty(); i++) {
+            final Stream stream = heap.poll();
+            taken[stream.index] = ++stream.taken;
+            if (stream.taken < stream.keys.length) {
+                heap.add(stream);
+            }
+        }
+
+        return taken;
+    }
+
+    private static int rank(Object key) {
+        if (key instanceof BigDecimal) {
+            return 0;
+        } else if (key instanceof String) {
+            return 1;
+        } else if (key instanceof Boolean) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private static Map<String, String[]> parse(String property) {
+        final Map<String, String[]> keys = new HashMap();
+        if (property != null) {
+            for (String definition : property.split(",")) {
+                final int idx = definition.indexOf('=');
+                if (idx > 0) {
+                    keys.put(definition.substring(0, idx).trim(), 
+                            definition.substring(idx + 1).trim().split("\\."));
+                }
+            }
+        }
+        return Collections.unmodifiableMap(keys);
+    }
+
+    /**
+     * The resultset's results sorted by the key.
+     */
+    private static class Stream {
+        final int index;
+        final Object[] keys;
+        int taken;
+        
+        Stream(int index, List results, String[] sort_key) {
+            this.index = index;
+            
+            final int n = results.size();
+            final Object[][] records = new Object[n][];
+            boolean sorted = true;
+            for (int i = 0; i < n; i++) {
+                final Object result = results.get(i);
+                records[i] = new Object[] {JsonRecords.getValue(result, sort_key), result};
+                if (sorted && i > 0 && KEY_COMPARATOR.compare(records[i - 1][0], records[i][0]) > 0) {
+                    sorted = false;
+                }
+            }
+
+            if (!sorted) {
+                // beacons are not obliged to sort their results
+                Arrays.sort(records, (r1, r2) -> KEY_COMPARATOR.compare(r1[0], r2[0]));
+                for (int i = 0; i < n; i++) {
+                    results.set(i, records[i][1]);
+                }
+            }
+            
+            keys = new Object[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = records[i][0];
+            }
+        }
+        
+        Object head() {
+            return keys[taken];
+        }
+    }
+}
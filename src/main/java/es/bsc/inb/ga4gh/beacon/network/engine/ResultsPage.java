@@ -0,0 +1,224 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The page of the beacon network results.
+ * 
+ * Beacons are asked for 'skip + limit' records starting from their own 
+ * offsets kept (for every resultset) in the pagination cursor. The global 'skip' is only applied to
+ * the first page (requested without the cursor). The page is then cut out 
+ * of all the beacons' results either in the sort key order or in the order 
+ * of the resultsets.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class ResultsPage {
+    
+    private final PaginationCursor cursor;
+    private final int skip;
+    private final int limit;
+    
+    private final Set<String> beacons = new HashSet();
+    
+    private PaginationCursor next;
+
+    /**
+     * @param cursor the pagination cursor or null for the first page
+     * @param skip the number of records to skip (ignored when cursor is provided)
+     * @param limit the number of records in the page
+     */
+    public ResultsPage(PaginationCursor cursor, Integer skip, int limit) {
+        this.cursor = cursor != null ? cursor : new PaginationCursor(Collections.EMPTY_MAP);
+        this.skip = cursor != null || skip == null ? 0 : Math.max(0, skip);
+        this.limit = limit;
+    }
+
+    /**
+     * Check whether the beacon has no more records, so may not be queried.
+     * 
+     * @param beaconId the beacon identifier
+     * 
+     * @return true if the beacon returned all its records
+     */
+    public boolean isExhausted(String beaconId) {
+        return cursor.isExhausted(beaconId);
+    }
+
+    /**
+     * Register the beacon queried for the page.
+     * 
+     * @param beaconId the beacon identifier
+     */
+    public void addBeacon(String beaconId) {
+        beacons.add(beaconId);
+    }
+
+    /**
+     * Get the 'skip' to request from the beacon.
+     * 
+     * @param beaconId the beacon identifier
+     * 
+     * @return the number of the beacon's records to skip
+     */
+    public int getSkip(String beaconId) {
+        return cursor.getOffset(beaconId);
+    }
+
+    /**
+     * Get the 'limit' to request from every beacon.
+     * 
+     * @return the maximum number of records the page may take from a beacon
+     */
+    public int getLimit() {
+        return skip + limit;
+    }
+
+    /**
+     * Cut the page out of the resultsets.
+     * 
+     * The records of the resultsets that are ahead of the beacon's offset 
+     * (already returned to the client) are dropped first.
+     * 
+     * @param resultsets the aggregated resultsets
+     * @param sort_key the sort key or null
+     * 
+     * @return the cursor for the next page or null if there are no more pages
+     */
+    public PaginationCursor apply(List<BeaconResultset> resultsets, String[] sort_key) {
+
+        // the number of records returned by the beacon and the offset of the first new one
+        final int[] returned = new int[resultsets.size()];
+        final int[] offsets = new int[resultsets.size()];
+        for (int i = 0, n = resultsets.size(); i < n; i++) {
+            final BeaconResultset resultset = resultsets.get(i);
+            final List results = resultset.getResults();
+            returned[i] = results == null ? 0 : results.size();
+            if (BeaconNetworkResponseBuilder.isErrorResultset(resultset)) {
+                continue;
+            }
+            final int skipped = cursor.getOffset(resultset.getBeaconId());
+            final int offset = cursor.getOffset(resultset.getBeaconId(), resultset.getId());
+            final int dropped = offset == PaginationCursor.EXHAUSTED ? returned[i] 
+                    : Math.min(returned[i], offset - skipped);
+            offsets[i] = offset == PaginationCursor.EXHAUSTED ? offset : skipped + dropped;
+            if (dropped > 0) {
+                resultset.setResults(new ArrayList(results.subList(dropped, returned[i])));
+            }
+        }
+
+        final int[] skipped = skip == 0 ? new int[resultsets.size()] : select(resultsets, sort_key, skip);
+        final int[] consumed = select(resultsets, sort_key, skip + limit);
+
+        final Map<String, Map<String, Integer>> next_offsets = new HashMap();
+        for (int i = 0, n = resultsets.size(); i < n; i++) {
+            final BeaconResultset resultset = resultsets.get(i);
+            if (BeaconNetworkResponseBuilder.isErrorResultset(resultset)) {
+                continue; // failed beacons are asked again from the same offset
+            }
+            final List results = resultset.getResults();
+            final int remained = results == null ? 0 : results.size();
+            final boolean exhausted = offsets[i] == PaginationCursor.EXHAUSTED || 
+                    (consumed[i] == remained && returned[i] < getLimit());
+            next_offsets.computeIfAbsent(resultset.getBeaconId(), k -> new LinkedHashMap())
+                    .put(resultset.getId() == null ? "" : resultset.getId(), 
+                            exhausted ? PaginationCursor.EXHAUSTED : offsets[i] + consumed[i]);
+            if (skipped[i] > 0 || consumed[i] < remained) {
+                resultset.setResults(new ArrayList(results.subList(skipped[i], consumed[i])));
+            }
+        }
+
+        final Map<String, Map<String, Integer>> beacons_offsets = new HashMap();
+        for (String beacon_id : beacons) {
+            final Map<String, Integer> known = cursor.getOffsets(beacon_id);
+            final Map<String, Integer> resultsets_offsets = next_offsets.get(beacon_id);
+            if (resultsets_offsets == null) {
+                // not responded (or failed) beacons are asked again
+                beacons_offsets.put(beacon_id, known != null ? known : Collections.EMPTY_MAP);
+            } else {
+                if (known != null) {
+                    // the resultsets that are not returned any more have no more records
+                    for (String resultset_id : known.keySet()) {
+                        resultsets_offsets.putIfAbsent(resultset_id, PaginationCursor.EXHAUSTED);
+                    }
+                }
+                beacons_offsets.put(beacon_id, resultsets_offsets);
+            }
+        }
+        
+        next = cursor.next(beacons_offsets);
+        if (next.isLast()) {
+            next = null;
+        }
+        return next;
+    }
+
+    /**
+     * Get the cursor of the next page.
+     * 
+     * @return the cursor or null if the page was not applied or it is the last one
+     */
+    public PaginationCursor getNextCursor() {
+        return next;
+    }
+
+    /**
+     * Create the next page of the same size.
+     * 
+     * @return the next page
+     */
+    public ResultsPage next() {
+        return new ResultsPage(next, null, limit);
+    }
+
+    /**
+     * Find how many records of each resultset are among the first 'n' records.
+     */
+    private static int[] select(List<BeaconResultset> resultsets, String[] sort_key, int n) {
+        if (sort_key != null) {
+            return ResultsMerger.select(resultsets, sort_key, n);
+        }
+        final int[] taken = new int[resultsets.size()];
+        for (int i = 0, m = resultsets.size(); i < m && n > 0; i++) {
+            final List results = resultsets.get(i).getResults();
+            if (results != null) {
+                n -= taken[i] = Math.min(n, results.size());
+            }
+        }
+        return taken;
+    }
+}
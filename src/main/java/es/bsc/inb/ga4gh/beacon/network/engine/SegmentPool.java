@@ -0,0 +1,109 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pool of fixed size byte segments used to buffer beacons' responses.
+ * 
+ * Segments are allocated in a few size classes (all smaller than a G1 region
+ * half, so they are never humongous objects) and are recycled after the
+ * response has been processed. Each size class keeps at most 32MB of segments.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+final class SegmentPool {
+    
+    final static int[] SIZES = {4096, 65536, 262144};
+    
+    private final static int MAX_POOLED_BYTES = 32 * 1024 * 1024;
+
+    private final static Queue<byte[]>[] POOLS = new Queue[SIZES.length];
+    private final static AtomicInteger[] COUNTS = new AtomicInteger[SIZES.length];
+    
+    static {
+        for (int i = 0; i < SIZES.length; i++) {
+            POOLS[i] = new ConcurrentLinkedQueue();
+            COUNTS[i] = new AtomicInteger();
+        }
+    }
+    
+    private SegmentPool() {}
+
+    /**
+     * Get the size class which segments fit the expected data size.
+     * 
+     * @param hint the expected data size
+     * 
+     * @return the size class
+     */
+    static int sizeClass(long hint) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (hint <= SIZES[i]) {
+                return i;
+            }
+        }
+        return SIZES.length - 1;
+    }
+    
+    /**
+     * Get the segment of the size class.
+     * 
+     * @param size_class the size class
+     * 
+     * @return either pooled or newly allocated segment
+     */
+    static byte[] acquire(int size_class) {
+        final byte[] segment = POOLS[size_class].poll();
+        if (segment == null) {
+            return new byte[SIZES[size_class]];
+        }
+        COUNTS[size_class].decrementAndGet();
+        return segment;
+    }
+    
+    /**
+     * Return the segment to the pool.
+     * 
+     * @param segment the segment previously acquired from the pool
+     */
+    static void release(byte[] segment) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (segment.length == SIZES[i]) {
+                if (COUNTS[i].incrementAndGet() * SIZES[i] <= MAX_POOLED_BYTES) {
+                    POOLS[i].offer(segment);
+                } else {
+                    COUNTS[i].decrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import es.bsc.inb.ga4gh.beacon.network.model.jsonb.adapter.BeaconResponseDeserializer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The buffer that keeps the data in a chain of pooled segments.
+ * 
+ * The first segment size is chosen by the expected data size and every next
+ * segment is taken from the next (larger) size class, so the data is never
+ * copied while the buffer grows. The data may be read back via the zero-copy
+ * {@link #getInputStream()} view. Segments are returned to the pool by
+ * {@link #release()}, after that the buffer must not be used.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class SegmentedBuffer extends OutputStream 
+        implements BeaconResponseDeserializer.Source {
+
+    private byte[][] segments;
+    private int count;
+    
+    private int size_class;
+    private byte[] current;
+    private int pos;
+    private long size;
+    
+    /**
+     * @param hint the expected data size
+     */
+    public SegmentedBuffer(long hint) {
+        segments = new byte[8][];
+        size_class = SegmentPool.sizeClass(hint);
+    }
+
+    /**
+     * @return the number of bytes in the buffer
+     */
+    public long size() {
+        return size;
+    }
+    
+    @Override
+    public void write(int b) {
+        if (current == null || pos == current.length) {
+            next();
+        }
+        current[pos++] = (byte)b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (current == null || pos == current.length) {
+                next();
+            }
+            final int n = Math.min(len, current.length - pos);
+            System.arraycopy(b, off, current, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+    
+    /**
+     * Read the input stream till the end directly into the buffer segments.
+     * 
+     * @param in the input stream to read
+     * 
+     * @return the number of bytes read
+     * 
+     * @throws IOException 
+     */
+    public long readFrom(InputStream in) throws IOException {
+        final long start = size;
+        while (true) {
+            if (current == null || pos == current.length) {
+                next();
+            }
+            final int n = in.read(current, pos, current.length - pos);
+            if (n < 0) {
+                break;
+            }
+            pos += n;
+            size += n;
+        }
+        return size - start;
+    }
+
+    /**
+     * Get the input stream to read the buffered data without copying it.
+     * 
+     * @return the input stream over the buffer segments
+     */
+    @Override
+    public InputStream getInputStream() {
+        return new SegmentsInputStream();
+    }
+    
+    /**
+     * Get the buffered data as one contiguous array.
+     * 
+     * @return the copy of the buffered data
+     */
+    public byte[] toByteArray() {
+        final byte[] arr = new byte[Math.toIntExact(size)];
+        int off = 0;
+        for (int i = 0; i < count; i++) {
+            final int n = i == count - 1 ? pos : segments[i].length;
+            System.arraycopy(segments[i], 0, arr, off, n);
+            off += n;
+        }
+        return arr;
+    }
+
+    /**
+     * Copy the range of the buffered data.
+     * 
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * 
+     * @return the copy of the buffered data range
+     */
+    @Override
+    public byte[] copyOfRange(long offset, int length) {
+        final byte[] arr = new byte[length];
+        int i = 0;
+        while (i < count && offset >= segments[i].length) {
+            offset -= segments[i++].length;
+        }
+        for (int off = 0; off < length; i++, offset = 0) {
+            final int n = Math.min(length - off, segments[i].length - (int)offset);
+            System.arraycopy(segments[i], (int)offset, arr, off, n);
+            off += n;
+        }
+        return arr;
+    }
+
+    /**
+     * Decode the buffered data.
+     * The data of the single segment is decoded directly, otherwise it is
+     * only gathered into one (temporary) array.
+     * 
+     * @param charset the charset of the data
+     * 
+     * @return the string decoded from the buffered data
+     */
+    public String toString(Charset charset) {
+        if (count <= 1) {
+            return count == 0 ? "" : new String(segments[0], 0, pos, charset);
+        }
+        return new String(toByteArray(), charset);
+    }
+
+    /**
+     * Decode the buffered data keeping at most 'limit' bytes.
+     * When the data is larger than the limit, only its head and tail are decoded.
+     * 
+     * @param charset the charset of the data
+     * @param limit the maximum number of bytes to decode (0 - no limit)
+     * 
+     * @return the string decoded from the (truncated) buffered data
+     */
+    public String toString(Charset charset, long limit) {
+        if (limit <= 0 || size <= limit) {
+            return toString(charset);
+        }
+        
+        long head = limit / 2;
+        long tail = size - limit / 2;
+        // do not split utf-8 multibyte characters
+        while (head > 0 && (byteAt(head) & 0xC0) == 0x80) {
+            head--;
+        }
+        while (tail < size && (byteAt(tail) & 0xC0) == 0x80) {
+            tail++;
+        }
+
+        final InputStream in = getInputStream();
+        try {
+            final String h = new String(in.readNBytes((int)head), charset);
+            in.skipNBytes(tail - head);
+            final String t = new String(in.readAllBytes(), charset);
+            return h + "\n... [" + (tail - head) + " bytes skipped] ...\n" + t;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private byte byteAt(long idx) {
+        for (int i = 0; i < count; i++) {
+            if (idx < segments[i].length) {
+                return segments[i][(int)idx];
+            }
+            idx -= segments[i].length;
+        }
+        return 0;
+    }
+
+    /**
+     * Return all the segments to the pool.
+     */
+    public synchronized void release() {
+        if (segments != null) {
+            for (int i = 0; i < count; i++) {
+                SegmentPool.release(segments[i]);
+            }
+            segments = null;
+            current = null;
+            count = 0;
+            pos = 0;
+            size = 0;
+        }
+    }
+    
+    private void next() {
+        if (segments == null) {
+            throw new IllegalStateException("the buffer has been released");
+        }
+        if (current != null && size_class < SegmentPool.SIZES.length - 1) {
+            size_class++;
+        }
+        if (count == segments.length) {
+            segments = Arrays.copyOf(segments, count * 2);
+        }
+        segments[count++] = current = SegmentPool.acquire(size_class);
+        pos = 0;
+    }
+    
+    private class SegmentsInputStream extends InputStream {
+
+        private int segment;
+        private int offset;
+
+        @Override
+        public int read() {
+            final byte[] buf = segment();
+            return buf == null ? -1 : buf[offset++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            final byte[] buf = segment();
+            if (buf == null) {
+                return -1;
+            }
+            final int n = Math.min(len, limit() - offset);
+            System.arraycopy(buf, offset, b, off, n);
+            offset += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while (skipped < n && segment() != null) {
+                final int k = (int)Math.min(n - skipped, limit() - offset);
+                offset += k;
+                skipped += k;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            final byte[] buf = segment();
+            return buf == null ? 0 : limit() - offset;
+        }
+
+        /**
+         * Get the current segment skipping exhausted ones.
+         * 
+         * @return the segment with unread data or null
+         */
+        private byte[] segment() {
+            if (segments == null) {
+                return null;
+            }
+            while (segment < count) {
+                if (offset < limit()) {
+                    return segments[segment];
+                }
+                segment++;
+                offset = 0;
+            }
+            return null;
+        }
+        
+        private int limit() {
+            return segment == count - 1 ? pos : segments[segment].length;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+package es.bsc.inb.ga4gh.beacon.network.engine;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precompiled beacon endpoint URL template 
+ * (e.g. 'https://beacons.bsc.es/beacon/v2.0.0/individuals/{id}/biosamples').
+ * 
+ * The template is split into the literal parts and the '{param}' path segments.
+ * The parameters are substituted by the client's request path segments 
+ * at the same position from the end of the path.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+final class UrlTemplate {
+
+    private final static String HEX = "0123456789ABCDEF";
+
+    private final String template;
+    private final String[] literals; // literal parts around the parameters
+    private final String[] params;   // parameters' placeholders ('{id}')
+    private final int[] positions;   // parameters' segment positions from the end (0 - the last)
+
+    UrlTemplate(String template) {
+        this.template = template;
+
+        final List<String> literal_list = new ArrayList();
+        final List<String> param_list = new ArrayList();
+        final List<Integer> position_list = new ArrayList();
+        
+        final int length = template.length();
+        int start = 0; // the literal start
+        for (int i = 0; i < length; i++) {
+            if (template.charAt(i) == '{' && i > 0 && template.charAt(i - 1) == '/') {
+                final int end = template.indexOf('/', i);
+                final int segment_end = end < 0 ? length : end;
+                if (template.charAt(segment_end - 1) == '}') {
+                    literal_list.add(template.substring(start, i));
+                    param_list.add(template.substring(i, segment_end));
+                    position_list.add(count(template, segment_end));
+                    start = i = segment_end;
+                }
+            }
+        }
+        literal_list.add(template.substring(start));
+
+        literals = literal_list.toArray(String[]::new);
+        params = param_list.toArray(String[]::new);
+        positions = position_list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Expand the template for the client's request.
+     * 
+     * @param path_info the client's request path
+     * @param query the client's request query string (may be null)
+     * @param parameters query parameters' names and values to replace 
+     * (null value removes the parameter, null name is ignored)
+     * 
+     * @return the beacon's endpoint URI
+     */
+    URI expand(String path_info, String query, String... parameters) {
+        final StringBuilder sb = new StringBuilder(template.length() + 
+                (path_info == null ? 0 : path_info.length()) + 
+                (query == null ? 0 : query.length()) + 64);
+
+        int path_end = path_info == null ? 0 : path_info.length();
+        while (path_end > 0 && path_info.charAt(path_end - 1) == '/') {
+            path_end--;
+        }
+
+        for (int i = 0; i < params.length; i++) {
+            sb.append(literals[i]);
+            if (!appendSegment(sb, path_info, path_end, positions[i])) {
+                // keep the placeholder for the missed segment
+                sb.append("%7B").append(params[i], 1, params[i].length() - 1).append("%7D");
+            }
+        }
+        sb.append(literals[params.length]);
+
+        char separator = template.indexOf('?') < 0 ? '?' : '&';
+        if (query != null) {
+            for (int start = 0, end; start < query.length(); start = end + 1) {
+                end = query.indexOf('&', start);
+                if (end < 0) {
+                    end = query.length();
+                }
+                if (end > start && !isReplaced(query, start, end, parameters)) {
+                    sb.append(separator);
+                    appendQueryParameter(sb, query, start, end);
+                    separator = '&';
+                }
+            }
+        }
+        for (int i = 1; i < parameters.length; i += 2) {
+            if (parameters[i - 1] != null && parameters[i] != null) {
+                sb.append(separator).append(parameters[i - 1]).append('=').append(parameters[i]);
+                separator = '&';
+            }
+        }
+
+        return URI.create(sb.toString());
+    }
+
+    /**
+     * Check whether the query parameter is one of the replaced ones.
+     */
+    private static boolean isReplaced(String query, int start, int end, String[] parameters) {
+        int name_end = query.indexOf('=', start);
+        if (name_end < 0 || name_end > end) {
+            name_end = end;
+        }
+        for (int i = 0; i < parameters.length; i += 2) {
+            final String name = parameters[i];
+            if (name != null && name.length() == name_end - start && query.startsWith(name, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Append the request path segment at the position from the end.
+     * The segment is percent-encoded as the servlet path is decoded.
+     * 
+     * @return false if there is no such segment in the path
+     */
+    private static boolean appendSegment(StringBuilder sb, String path, int end, int position) {
+        if (path == null) {
+            return false;
+        }
+        int start = path.lastIndexOf('/', end - 1);
+        for (int i = 0; i < position && start >= 0; i++) {
+            end = start;
+            start = path.lastIndexOf('/', end - 1);
+        }
+        if (start < 0) {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            final char ch = path.charAt(i);
+            if (isUnreserved(ch)) {
+                sb.append(ch);
+            } else {
+                i = appendEncoded(sb, path, i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append the client's query parameter percent-encoding the characters
+     * which are illegal in the URI query (the valid escapes are kept as is).
+     */
+    private static void appendQueryParameter(StringBuilder sb, String query, int start, int end) {
+        for (int i = start; i < end; i++) {
+            final char ch = query.charAt(i);
+            if (isUnreserved(ch) || ch == '/' || ch == '?' ||
+                (ch == '%' && i + 2 < end && isHex(query.charAt(i + 1)) && isHex(query.charAt(i + 2)))) {
+                sb.append(ch);
+            } else {
+                i = appendEncoded(sb, query, i);
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || 
+               "-._~!$&'()*+,;=:@".indexOf(ch) >= 0;
+    }
+
+    private static boolean isHex(char ch) {
+        return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+    }
+
+    /**
+     * Append the percent-encoded UTF-8 bytes of the code point at the index.
+     * 
+     * @return the index of the last char of the code point
+     */
+    private static int appendEncoded(StringBuilder sb, String str, int i) {
+        final int cp = str.codePointAt(i);
+        for (byte b : new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8)) {
+            sb.append('%').append(HEX.charAt((b >> 4) & 0xF)).append(HEX.charAt(b & 0xF));
+        }
+        return i + Character.charCount(cp) - 1;
+    }
+
+    /**
+     * Count the path segments after the position.
+     */
+    private static int count(String template, int pos) {
+        int n = 0;
+        final int query = template.indexOf('?', pos);
+        for (int i = pos, end = query < 0 ? template.length() : query; i < end; i++) {
+            if (template.charAt(i) == '/') {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
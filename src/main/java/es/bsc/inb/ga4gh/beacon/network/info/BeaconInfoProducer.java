@@ -31,6 +31,7 @@ import es.bsc.inb.ga4gh.beacon.network.config.BeaconNetworkConfiguration;
 import static es.bsc.inb.ga4gh.beacon.network.config.ConfigurationProperties.BEACON_NETWORK_INFO_FILE;
 import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfigUpdatedEvent;
 import es.bsc.inb.ga4gh.beacon.network.config.NetworkConfiguration;
+import es.bsc.inb.ga4gh.beacon.network.engine.BeaconResponseValidation;
 import es.bsc.inb.ga4gh.beacon.network.model.BeaconNetworkInfoResponse;
 import es.bsc.inb.ga4gh.beacon.validator.BeaconValidationMessage;
 import jakarta.annotation.PostConstruct;
@@ -39,7 +40,9 @@ import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import jakarta.json.Json;
+import jakarta.json.JsonArray;
 import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -59,8 +62,13 @@ public class BeaconInfoProducer implements Serializable {
     @Inject
     private NetworkConfiguration config;
 
+    @Inject
+    private BeaconResponseValidation validation;
+
     private BeaconNetworkInfoResponse beacon_info;
     
+    private JsonArray metadata_errors;
+    
     @PostConstruct
     public void init() {
         beacon_info = cfg.loadConfiguration(BEACON_NETWORK_INFO_FILE, BeaconNetworkInfoResponse.class);
@@ -95,14 +103,9 @@ public class BeaconInfoProducer implements Serializable {
     }
 
     public void updateMetadataParsingErrors() {
-        BeaconInfoResults results = beacon_info.getResponse();
-        if (results == null) {
-            beacon_info.setResponse(results = new BeaconInfoResults());
-        }
-            
         final Map<String, List<BeaconValidationMessage>> errors = config.getErrors();
         if (errors.isEmpty()) {
-            results.setInfo(null);
+            metadata_errors = null;
         } else {
             final JsonArrayBuilder endpoints = Json.createArrayBuilder();
             for (Map.Entry<String, List<BeaconValidationMessage>> entry : errors.entrySet()) {
@@ -132,12 +135,42 @@ public class BeaconInfoProducer implements Serializable {
                 endpoint.add("errors", arr);
                 endpoints.add(endpoint);
             }
-            results.setInfo(Json.createObjectBuilder().add("metadata_errors", endpoints).build());
+            metadata_errors = endpoints.build();
+        }
+        updateInfo();
+    }
+
+    /**
+     * Update the '/info' with metadata errors and beacons' responses validation state.
+     */
+    private void updateInfo() {
+        BeaconInfoResults results = beacon_info.getResponse();
+        if (results == null) {
+            beacon_info.setResponse(results = new BeaconInfoResults());
+        }
+        
+        final JsonObject validation_state = validation.getTrustState();
+        if (metadata_errors == null && validation_state == null) {
+            results.setInfo(null);
+        } else {
+            final JsonObjectBuilder info = Json.createObjectBuilder();
+            if (metadata_errors != null) {
+                info.add("metadata_errors", metadata_errors);
+            }
+            if (validation_state != null) {
+                info.add("responses_validation", validation_state);
+            }
+            results.setInfo(info.build());
         }
     }
 
     @Produces
-    public BeaconNetworkInfoResponse beaconInfo() {        
+    public BeaconNetworkInfoResponse beaconInfo() {
+        if (beacon_info != null) {
+            synchronized(BeaconNetworkInfoResponse.class) {
+                updateInfo();
+            }
+        }
         return beacon_info;
     }
 
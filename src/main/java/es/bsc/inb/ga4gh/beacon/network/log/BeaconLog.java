@@ -25,7 +25,6 @@
 
 package es.bsc.inb.ga4gh.beacon.network.log;
 
-import es.bsc.inb.ga4gh.beacon.network.log.BeaconLogEntity.REQUEST_TYPE;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import jakarta.persistence.EntityManager;
@@ -66,14 +65,11 @@ public class BeaconLog {
     
     public void log(BeaconLogEntity record, BeaconLogLevel level) {
 
-        if (level == BeaconLogLevel.NONE ||
-            (level == BeaconLogLevel.METADATA && 
-             record.getType() != REQUEST_TYPE.METADATA)) {
+        if (!level.logs(record.getType())) {
             return;
         }
 
-        if (level.compareTo(BeaconLogLevel.RESPONSES) < 0 &&
-            record.getType() == REQUEST_TYPE.QUERY) {
+        if (!level.logsResponses(record.getType())) {
             record.setMessage(null);
             record.setResponse(null);
         }
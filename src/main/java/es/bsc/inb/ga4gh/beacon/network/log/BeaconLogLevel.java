@@ -1,5 +1,7 @@
 package es.bsc.inb.ga4gh.beacon.network.log;
 
+import es.bsc.inb.ga4gh.beacon.network.log.BeaconLogEntity.REQUEST_TYPE;
+
 /**
  * @author Dmitry Repchevsky
  */
@@ -29,4 +31,26 @@ public enum BeaconLogLevel {
             LEVEL = value;
         }
     }
+
+    /**
+     * Check whether the records of the type are persisted at this level.
+     * 
+     * @param type the type of the log record
+     * 
+     * @return true if the records are persisted
+     */
+    public boolean logs(REQUEST_TYPE type) {
+        return this != NONE && (this != METADATA || type == REQUEST_TYPE.METADATA);
+    }
+
+    /**
+     * Check whether the records' messages and responses are persisted at this level.
+     * 
+     * @param type the type of the log record
+     * 
+     * @return true if the responses are persisted
+     */
+    public boolean logsResponses(REQUEST_TYPE type) {
+        return logs(type) && (type != REQUEST_TYPE.QUERY || compareTo(RESPONSES) >= 0);
+    }
 }
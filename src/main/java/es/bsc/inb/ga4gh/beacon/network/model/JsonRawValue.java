@@ -0,0 +1,165 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The JSON value that is kept as UTF-8 encoded bytes exactly as it was
+ * received from the beacon.
+ * 
+ * Records returned by the backed beacons are never inspected by the network,
+ * so they may be written back into the aggregated response as they are,
+ * avoiding both deserialization and serialization of the records.
+ * Every value owns its bytes (rather than referring the whole beacon response),
+ * and large results may be moved off the heap into the mapped buffer.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class JsonRawValue {
+    
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    /**
+     * @param json the json value
+     */
+    public JsonRawValue(String json) {
+        this(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param bytes UTF-8 encoded json value
+     */
+    public JsonRawValue(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Create the value kept as UTF-8 encoded bytes of the (mapped) buffer.
+     * 
+     * @param buffer the buffer with UTF-8 encoded json
+     * @param offset the offset of the value in the buffer
+     * @param length the length of the value in bytes
+     */
+    public JsonRawValue(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return the length of the value in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Get the heap memory the value keeps reachable. The value made of the 
+     * part of a larger heap buffer retains the whole buffer.
+     * 
+     * @return the number of retained heap bytes (0 for the mapped values)
+     */
+    public int getRetainedSize() {
+        return buffer.isDirect() ? 0 : buffer.capacity();
+    }
+
+    /**
+     * @return true if the value is kept off the heap (e.g. spilled to a mapped file)
+     */
+    public boolean isMapped() {
+        return buffer.isDirect();
+    }
+
+    /**
+     * Get the stream to read the value bytes without copying them.
+     * 
+     * @return the stream of UTF-8 encoded json value
+     */
+    public InputStream getInputStream() {
+        return new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                return pos < length ? buffer.get(offset + pos++) & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (pos >= length) {
+                    return -1;
+                }
+                final int n = Math.min(len, length - pos);
+                buffer.get(offset + pos, b, off, n);
+                pos += n;
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Write the value as UTF-8 encoded bytes.
+     * 
+     * @param out the stream to write the value to
+     * 
+     * @throws IOException 
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + offset, length);
+        } else {
+            final byte[] chunk = new byte[Math.min(length, 8192)];
+            for (int pos = 0; pos < length;) {
+                final int n = Math.min(chunk.length, length - pos);
+                buffer.get(offset + pos, chunk, 0, n);
+                out.write(chunk, 0, n);
+                pos += n;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, 
+                    StandardCharsets.UTF_8);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
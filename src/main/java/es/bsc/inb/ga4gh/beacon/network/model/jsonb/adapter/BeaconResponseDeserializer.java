@@ -25,50 +25,322 @@
 
 package es.bsc.inb.ga4gh.beacon.network.model.jsonb.adapter;
 
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.common.Handover;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.AbstractBeaconResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconCollections;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconCollectionsResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconError;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconErrorResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponse;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponseMeta;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResponseSummary;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultset;
+import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsets;
 import es.bsc.inb.ga4gh.beacon.framework.model.v200.responses.BeaconResultsetsResponse;
+import es.bsc.inb.ga4gh.beacon.network.model.JsonRawValue;
+import es.bsc.inb.ga4gh.beacon.network.schema.StreamingSchemaValidator;
+import es.bsc.inb.ga4gh.beacon.network.schema.ValidatingJsonParser;
 import jakarta.json.JsonObject;
-import jakarta.json.JsonValue;
 import jakarta.json.bind.Jsonb;
-import jakarta.json.bind.JsonbBuilder;
 import jakarta.json.bind.serializer.DeserializationContext;
 import jakarta.json.bind.serializer.JsonbDeserializer;
 import jakarta.json.stream.JsonParser;
+import java.io.InputStream;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A custom deserializer that supports BeaconResultsetsResponse and BeaconCollectionsResponse.
  * 
  * Because the aggregator may get any type of BeaconResponse, it should correctly 
  * deserialize it.
+ * The response is read in a single pass over the parser events: top level 
+ * properties are bound directly into the model and the response type is decided 
+ * by the properties found ('responseSummary', 'response.collections', 'error').
+ * 
+ * When deserialized via {@link #fromJson(Jsonb, Source, StreamingSchemaValidator)} 
+ * the resultsets' results are not bound, but kept as {@link JsonRawValue} copies
+ * of the source document bytes.
+ * 
+ * When the validator is provided, all the parsed events are also passed to it,
+ * so the document is validated in the same pass it is deserialized.
  * 
  * @author Dmitry Repchevsky
  */
 
 public class BeaconResponseDeserializer implements JsonbDeserializer<AbstractBeaconResponse> {
 
-    private static final Jsonb jsonb = JsonbBuilder.create();
+    private final static Type RESULTSETS_TYPE = 
+            new ArrayList<BeaconResultset<JsonObject>>(){}.getClass().getGenericSuperclass();
+
+    private final static Type COLLECTIONS_TYPE = 
+            new ArrayList<JsonObject>(){}.getClass().getGenericSuperclass();
     
+    private final static Type HANDOVERS_TYPE = 
+            new ArrayList<Handover>(){}.getClass().getGenericSuperclass();
+
+    /**
+     * The deserialization context: the source document which results are to be 
+     * kept as raw json values and the validator for the document.
+     */
+    private final static ThreadLocal<Context> CONTEXT = new ThreadLocal();
+    
+    /**
+     * The UTF-8 encoded beacon response document.
+     */
+    public interface Source {
+        
+        /**
+         * @return the stream to read the document
+         */
+        InputStream getInputStream();
+
+        /**
+         * Copy the range of the document bytes.
+         * 
+         * @param offset the offset of the range
+         * @param length the length of the range
+         * 
+         * @return the bytes of the range
+         */
+        byte[] copyOfRange(long offset, int length);
+    }
+
+    /**
+     * Deserialize the beacon response keeping resultsets' results as raw json.
+     * 
+     * @param jsonb the jsonb configured with this deserializer
+     * @param source the beacon response document
+     * @param validator optional validator to validate the document
+     * 
+     * @return deserialized beacon response
+     */
+    public static AbstractBeaconResponse fromJson(Jsonb jsonb, Source source, 
+            StreamingSchemaValidator validator) {
+        final Utf8OffsetReader reader = new Utf8OffsetReader(source.getInputStream());
+        CONTEXT.set(new Context(source, reader, validator));
+        try {
+            return jsonb.fromJson(reader, AbstractBeaconResponse.class);
+        } finally {
+            CONTEXT.remove();
+        }
+    }
+
+    /**
+     * Deserialize the beacon response validating it on the way.
+     * 
+     * @param jsonb the jsonb configured with this deserializer
+     * @param reader the beacon response document reader
+     * @param validator optional validator to validate the document
+     * 
+     * @return deserialized beacon response
+     */
+    public static AbstractBeaconResponse fromJson(Jsonb jsonb, Reader reader, 
+            StreamingSchemaValidator validator) {
+        CONTEXT.set(new Context(null, null, validator));
+        try {
+            return jsonb.fromJson(reader, AbstractBeaconResponse.class);
+        } finally {
+            CONTEXT.remove();
+        }
+    }
+
     @Override
     public AbstractBeaconResponse deserialize(JsonParser parser, DeserializationContext ctx, Type type) {
-        final JsonValue value = parser.getValue();
-        if (JsonValue.ValueType.OBJECT == value.getValueType()) {
-            final JsonObject obj = value.asJsonObject();
-            if (obj.containsKey("responseSummary")) {
-                final JsonValue response = obj.get("response");
-                if (response != null && JsonValue.ValueType.OBJECT == response.getValueType()) {
-                    if (response.asJsonObject().containsKey("collections")) {
-                        return jsonb.fromJson(value.toString(), 
-                                new BeaconCollectionsResponse<JsonObject>(){}
-                                        .getClass().getGenericSuperclass());
+        final Context context = CONTEXT.get();
+        if (context == null) {
+            return deserialize(parser, ctx, (Context)null);
+        }
+        if (context.validator == null) {
+            return deserialize(parser, ctx, context);
+        }
+        return deserialize(new ValidatingJsonParser(parser, context.validator, true), 
+                ctx, context);
+    }
+
+    private AbstractBeaconResponse deserialize(JsonParser parser, 
+            DeserializationContext ctx, Context context) {
+
+        BeaconResponseMeta meta = null;
+        BeaconResponseSummary summary = null;
+        BeaconError error = null;
+        JsonObject info = null;
+        List handovers = null;
+        List<BeaconResultset> resultsets = null;
+        List<JsonObject> collections = null;
+
+        while (parser.hasNext()) {
+            final JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.END_OBJECT ||
+                event == JsonParser.Event.END_ARRAY) {
+                break;
+            }
+            if (event != JsonParser.Event.KEY_NAME) {
+                skip(parser, event); // not an object
+                continue;
+            }
+            final String name = parser.getString();
+            final JsonParser.Event value = parser.next();
+            if (value == JsonParser.Event.VALUE_NULL) {
+                continue;
+            }
+            switch(name) {
+                case "meta": meta = ctx.deserialize(BeaconResponseMeta.class, parser); break;
+                case "responseSummary": summary = ctx.deserialize(BeaconResponseSummary.class, parser); break;
+                case "error": error = ctx.deserialize(BeaconError.class, parser); break;
+                case "info": info = ctx.deserialize(JsonObject.class, parser); break;
+                case "beaconHandovers": handovers = ctx.deserialize(HANDOVERS_TYPE, parser); break;
+                case "response":
+                    if (value == JsonParser.Event.START_OBJECT) {
+                        while (parser.hasNext() && parser.next() != JsonParser.Event.END_OBJECT) {
+                            final String property = parser.getString();
+                            final JsonParser.Event e = parser.next();
+                            if ("resultSets".equals(property) && e == JsonParser.Event.START_ARRAY) {
+                                resultsets = context == null || context.source == null 
+                                        ? ctx.deserialize(RESULTSETS_TYPE, parser) 
+                                        : readRawResultsets(parser, ctx, context);
+                            } else if ("collections".equals(property) && e == JsonParser.Event.START_ARRAY) {
+                                collections = ctx.deserialize(COLLECTIONS_TYPE, parser);
+                            } else {
+                                skip(parser, e);
+                            }
+                        }
+                    } else {
+                        skip(parser, value);
                     }
-                }
-                return jsonb.fromJson(value.toString(), new BeaconResultsetsResponse<JsonObject>(){}
-                                    .getClass().getGenericSuperclass());
+                    break;
+                default: skip(parser, value);
             }
         }
-        return jsonb.fromJson(value.toString(), BeaconErrorResponse.class);
+
+        if (summary == null) {
+            final BeaconErrorResponse response = new BeaconErrorResponse();
+            response.setMeta(meta);
+            response.setError(error);
+            return response;
+        }
+
+        final BeaconResponse response;
+        if (collections != null) {
+            final BeaconCollectionsResponse<JsonObject> collections_response = new BeaconCollectionsResponse();
+            final BeaconCollections<JsonObject> beacon_collections = new BeaconCollections();
+            beacon_collections.setCollections(collections);
+            collections_response.setResponse(beacon_collections);
+            response = collections_response;
+        } else {
+            final BeaconResultsetsResponse resultsets_response = new BeaconResultsetsResponse();
+            if (resultsets != null) {
+                final BeaconResultsets beacon_resultsets = new BeaconResultsets();
+                beacon_resultsets.setResultSets(resultsets);
+                resultsets_response.setResponse(beacon_resultsets);
+            }
+            response = resultsets_response;
+        }
+        response.setMeta(meta);
+        response.setResponseSummary(summary);
+        response.setInfo(info);
+        response.setBeaconHandovers(handovers);
+
+        return response;
+    }
+
+    private List<BeaconResultset> readRawResultsets(JsonParser parser, 
+            DeserializationContext ctx, Context context) {
+        final List<BeaconResultset> resultsets = new ArrayList();
+        while (parser.hasNext()) {
+            final JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.END_ARRAY) {
+                break;
+            }
+            if (event == JsonParser.Event.START_OBJECT) {
+                resultsets.add(readRawResultset(parser, ctx, context));
+            } else {
+                skip(parser, event);
+            }
+        }
+        return resultsets;
+    }
+
+    private BeaconResultset<JsonRawValue> readRawResultset(JsonParser parser, 
+            DeserializationContext ctx, Context context) {
+        final BeaconResultset<JsonRawValue> resultset = new BeaconResultset();
+        while (parser.hasNext() && parser.next() != JsonParser.Event.END_OBJECT) {
+            final String name = parser.getString();
+            final JsonParser.Event value = parser.next();
+            if (value == JsonParser.Event.VALUE_NULL) {
+                continue;
+            }
+            switch(name) {
+                case "id": resultset.setId(ctx.deserialize(String.class, parser)); break;
+                case "setType": resultset.setSetType(ctx.deserialize(String.class, parser)); break;
+                case "beaconId": resultset.setBeaconId(ctx.deserialize(String.class, parser)); break;
+                case "exists": resultset.setExists(ctx.deserialize(Boolean.class, parser)); break;
+                case "resultsCount": resultset.setResultsCount(ctx.deserialize(Integer.class, parser)); break;
+                case "info": resultset.setInfo(ctx.deserialize(JsonObject.class, parser)); break;
+                case "resultsHandovers": resultset.setResultsHandovers(ctx.deserialize(HANDOVERS_TYPE, parser)); break;
+                case "results": 
+                    if (value == JsonParser.Event.START_ARRAY) {
+                        resultset.setResults(readRawResults(parser, context));
+                    } else {
+                        skip(parser, value);
+                    }
+                    break;
+                default: skip(parser, value);
+            }
+        }
+        return resultset;
+    }
+    
+    /**
+     * Read results array as raw json values.
+     * The parser locations are the character offsets in the decoded document,
+     * which are mapped back to the source bytes, so objects and arrays are 
+     * copied as they are from the source.
+     * 
+     * @param parser the parser positioned at the start of the results array
+     * @param context the source document and its reader
+     * 
+     * @return the list of raw json results
+     */
+    private List<JsonRawValue> readRawResults(JsonParser parser, Context context) {
+        final List<JsonRawValue> results = new ArrayList();
+        while (parser.hasNext()) {
+            final JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.END_ARRAY) {
+                break;
+            }
+            if (event == JsonParser.Event.START_OBJECT ||
+                event == JsonParser.Event.START_ARRAY) {
+                final long start = context.reader.getByteOffset(
+                        parser.getLocation().getStreamOffset() - 1);
+                skip(parser, event);
+                final long end = context.reader.getByteOffset(
+                        parser.getLocation().getStreamOffset());
+                results.add(new JsonRawValue(context.source.copyOfRange(
+                        start, Math.toIntExact(end - start))));
+            } else {
+                results.add(new JsonRawValue(parser.getValue().toString()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Skip the value the parser is positioned at.
+     * 
+     * @param parser the parser
+     * @param event current parser event
+     */
+    private static void skip(JsonParser parser, JsonParser.Event event) {
+        if (event == JsonParser.Event.START_OBJECT) {
+            parser.skipObject();
+        } else if (event == JsonParser.Event.START_ARRAY) {
+            parser.skipArray();
+        }
     }
+
+    private record Context(Source source, Utf8OffsetReader reader, 
+            StreamingSchemaValidator validator) {}
 }
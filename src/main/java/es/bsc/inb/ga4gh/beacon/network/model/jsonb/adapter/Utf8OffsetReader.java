@@ -0,0 +1,188 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.model.jsonb.adapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * UTF-8 decoding reader that maps the decoded chars offsets back to the
+ * offsets of the source bytes.
+ * 
+ * The parser locations are the chars offsets, while raw values are taken as 
+ * the source bytes ranges. Only the positions after multibyte characters are
+ * recorded, so mostly ASCII documents need (almost) no memory for the mapping.
+ * Malformed sequences are decoded as the replacement character.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+final class Utf8OffsetReader extends Reader {
+
+    private final InputStream in;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    private int limit;
+
+    // the number of decoded chars
+    private long chars;
+    // the low surrogate which did not fit into the reader buffer
+    private int pending = -1;
+
+    // chars offsets after which the bytes offsets are shifted by 'shifts'
+    private long[] offsets = new long[16];
+    private long[] shifts = new long[16];
+    private int count;
+    private long shift;
+
+    Utf8OffsetReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Get the source bytes offset of the decoded chars offset.
+     * 
+     * @param offset the chars offset (the parser location)
+     * 
+     * @return the bytes offset
+     */
+    long getByteOffset(long offset) {
+        int idx = Arrays.binarySearch(offsets, 0, count, offset);
+        if (idx < 0) {
+            idx = -idx - 2;
+        }
+        return idx < 0 ? offset : offset + shifts[idx];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        if (pending >= 0) {
+            cbuf[off + n++] = (char)pending;
+            pending = -1;
+        }
+        while (n < len) {
+            final int b = next();
+            if (b < 0) {
+                break;
+            }
+            if (b < 0x80) {
+                cbuf[off + n++] = (char)b;
+                chars++;
+                continue;
+            }
+
+            int cp;
+            int need;
+            if ((b & 0xE0) == 0xC0) {
+                cp = b & 0x1F;
+                need = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                cp = b & 0x0F;
+                need = 2;
+            } else if ((b & 0xF8) == 0xF0) {
+                cp = b & 0x07;
+                need = 3;
+            } else {
+                cp = 0xFFFD;
+                need = 0;
+            }
+            int bytes = 1;
+            for (; need > 0; need--) {
+                final int c = peek();
+                if (c < 0 || (c & 0xC0) != 0x80) {
+                    cp = 0xFFFD;
+                    break;
+                }
+                pos++;
+                bytes++;
+                cp = (cp << 6) | (c & 0x3F);
+            }
+            if (cp > 0x10FFFF || (cp >= 0xD800 && cp <= 0xDFFF)) {
+                cp = 0xFFFD;
+            }
+
+            if (cp >= 0x10000) {
+                cbuf[off + n++] = Character.highSurrogate(cp);
+                final char low = Character.lowSurrogate(cp);
+                if (n < len) {
+                    cbuf[off + n++] = low;
+                } else {
+                    pending = low;
+                }
+                chars += 2;
+                shift(bytes - 2);
+            } else {
+                cbuf[off + n++] = (char)cp;
+                chars++;
+                shift(bytes - 1);
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void shift(int extra) {
+        if (extra != 0) {
+            shift += extra;
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                shifts = Arrays.copyOf(shifts, count * 2);
+            }
+            offsets[count] = chars;
+            shifts[count++] = shift;
+        }
+    }
+
+    private int next() throws IOException {
+        final int b = peek();
+        if (b >= 0) {
+            pos++;
+        }
+        return b;
+    }
+
+    private int peek() throws IOException {
+        while (pos == limit) {
+            final int n = in.read(buf, 0, buf.length);
+            if (n < 0) {
+                return -1;
+            }
+            pos = 0;
+            limit = n;
+        }
+        return buf[pos] & 0xFF;
+    }
+}
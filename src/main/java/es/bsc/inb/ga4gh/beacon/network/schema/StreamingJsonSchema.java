@@ -0,0 +1,391 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.schema;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled JSON Schema which is used to validate JSON documents on the parser
+ * events, without building the document tree.
+ * 
+ * The schema is compiled from the same schema documents that are read by the
+ * JsonSchemaReader. Only the keywords that may be checked in a single pass are 
+ * supported (type, enum, const, properties, patternProperties, 
+ * additionalProperties, required, items, prefixItems, additionalItems, 
+ * allOf, anyOf, oneOf, not, $ref and string, number, array and object limits).
+ * Other keywords (e.g. 'format' or container 'enum') are ignored.
+ * 
+ * References are resolved relatively to the location of the schema document
+ * (not the '$id') so the schemas bundled into the validator library are used.
+ * A reference that can not be resolved fails the compilation, so the caller
+ * falls back to the JsonSchema (tree) validation.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class StreamingJsonSchema {
+
+    final static StreamingJsonSchema TRUE = new StreamingJsonSchema(true);
+    final static StreamingJsonSchema FALSE = new StreamingJsonSchema(false);
+
+    /**
+     * The boolean schema value (null for object schemas).
+     */
+    final Boolean bool;
+
+    Set<String> types;
+    List<JsonValue> enumeration;
+    JsonValue constant;
+    
+    Map<String, StreamingJsonSchema> properties;
+    Map<Pattern, StreamingJsonSchema> patternProperties;
+    StreamingJsonSchema additionalProperties;
+    List<String> required;
+    
+    StreamingJsonSchema items;
+    List<StreamingJsonSchema> prefixItems;
+    
+    List<StreamingJsonSchema> allOf;
+    List<StreamingJsonSchema> anyOf;
+    List<StreamingJsonSchema> oneOf;
+    StreamingJsonSchema not;
+    StreamingJsonSchema ref;
+
+    long minLength = -1;
+    long maxLength = -1;
+    long minItems = -1;
+    long maxItems = -1;
+    long minProperties = -1;
+    long maxProperties = -1;
+    Pattern pattern;
+    
+    BigDecimal minimum;
+    BigDecimal maximum;
+    BigDecimal exclusiveMinimum;
+    BigDecimal exclusiveMaximum;
+
+    /**
+     * Whether the schema has no constraints to check.
+     */
+    boolean trivial;
+    
+    private StreamingJsonSchema(boolean bool) {
+        this.bool = bool;
+        this.trivial = bool;
+    }
+
+    private StreamingJsonSchema() {
+        this.bool = null;
+    }
+
+    /**
+     * Create the new validator for a JSON document.
+     * 
+     * @return new validator
+     */
+    public StreamingSchemaValidator newValidator() {
+        return new StreamingSchemaValidator(this);
+    }
+
+    /**
+     * Load and compile the JSON Schema.
+     * 
+     * @param url the location of the schema
+     * 
+     * @return compiled schema or null if the schema (or any schema it refers to)
+     *         can not be loaded or compiled
+     */
+    public static StreamingJsonSchema load(URL url) {
+        try {
+            return new Loader().resolve(url.toString());
+        } catch (Exception ex) {
+            Logger.getLogger(StreamingJsonSchema.class.getName()).log(
+                    Level.WARNING, "error compiling schema {0} {1}", 
+                    new Object[]{url, ex.getMessage()});
+        }
+        return null;
+    }
+
+    private static StreamingJsonSchema compile(JsonValue value, URL base, Loader loader) {
+        if (value == JsonValue.TRUE) {
+            return TRUE;
+        }
+        if (value == JsonValue.FALSE) {
+            return FALSE;
+        }
+        final StreamingJsonSchema schema = new StreamingJsonSchema();
+        if (value instanceof JsonObject object) {
+            schema.compile(object, base, loader);
+        } else {
+            schema.trivial = true;
+        }
+        return schema;
+    }
+
+    private void compile(JsonObject object, URL base, Loader loader) {
+        final JsonValue type = object.get("type");
+        if (type instanceof JsonString str) {
+            types = Collections.singleton(str.getString());
+        } else if (type instanceof JsonArray arr) {
+            types = new HashSet();
+            for (JsonValue t : arr) {
+                if (t instanceof JsonString str) {
+                    types.add(str.getString());
+                }
+            }
+        }
+        
+        final JsonValue enum_value = object.get("enum");
+        if (enum_value instanceof JsonArray arr) {
+            enumeration = new ArrayList(arr);
+        }
+        constant = object.get("const");
+
+        final JsonValue properties_value = object.get("properties");
+        if (properties_value instanceof JsonObject obj) {
+            properties = new HashMap();
+            for (Map.Entry<String, JsonValue> entry : obj.entrySet()) {
+                properties.put(entry.getKey(), compile(entry.getValue(), base, loader));
+            }
+        }
+
+        final JsonValue pattern_properties = object.get("patternProperties");
+        if (pattern_properties instanceof JsonObject obj) {
+            patternProperties = new LinkedHashMap();
+            for (Map.Entry<String, JsonValue> entry : obj.entrySet()) {
+                patternProperties.put(Pattern.compile(entry.getKey()), 
+                        compile(entry.getValue(), base, loader));
+            }
+        }
+        
+        final JsonValue additional_properties = object.get("additionalProperties");
+        if (additional_properties != null) {
+            additionalProperties = compile(additional_properties, base, loader);
+        }
+
+        final JsonValue required_value = object.get("required");
+        if (required_value instanceof JsonArray arr) {
+            required = new ArrayList();
+            for (JsonValue r : arr) {
+                if (r instanceof JsonString str) {
+                    required.add(str.getString());
+                }
+            }
+        }
+
+        final JsonValue items_value = object.get("items");
+        if (items_value instanceof JsonArray arr) {
+            // draft-07 tuple validation
+            prefixItems = compileAll(arr, base, loader);
+            final JsonValue additional_items = object.get("additionalItems");
+            if (additional_items != null) {
+                items = compile(additional_items, base, loader);
+            }
+        } else if (items_value != null) {
+            items = compile(items_value, base, loader);
+        }
+        
+        final JsonValue prefix_items = object.get("prefixItems");
+        if (prefix_items instanceof JsonArray arr) {
+            prefixItems = compileAll(arr, base, loader);
+        }
+
+        allOf = compileAll(object.get("allOf"), base, loader);
+        anyOf = compileAll(object.get("anyOf"), base, loader);
+        oneOf = compileAll(object.get("oneOf"), base, loader);
+        
+        final JsonValue not_value = object.get("not");
+        if (not_value != null) {
+            not = compile(not_value, base, loader);
+        }
+
+        final JsonValue ref_value = object.get("$ref");
+        if (ref_value instanceof JsonString str) {
+            final String location;
+            try {
+                location = new URL(base, str.getString()).toString();
+            } catch (MalformedURLException ex) {
+                throw new IllegalStateException("invalid reference " + str.getString() + " " + base);
+            }
+            ref = loader.resolve(location);
+            if (ref == null) {
+                // unchecked reference would silently accept anything
+                throw new IllegalStateException("unresolved reference " + location);
+            }
+        }
+
+        minLength = getLong(object, "minLength");
+        maxLength = getLong(object, "maxLength");
+        minItems = getLong(object, "minItems");
+        maxItems = getLong(object, "maxItems");
+        minProperties = getLong(object, "minProperties");
+        maxProperties = getLong(object, "maxProperties");
+
+        final JsonValue pattern_value = object.get("pattern");
+        if (pattern_value instanceof JsonString str) {
+            pattern = Pattern.compile(str.getString());
+        }
+        
+        minimum = getNumber(object, "minimum");
+        maximum = getNumber(object, "maximum");
+        exclusiveMinimum = getNumber(object, "exclusiveMinimum");
+        exclusiveMaximum = getNumber(object, "exclusiveMaximum");
+        
+        trivial = types == null && enumeration == null && constant == null && 
+                properties == null && patternProperties == null && 
+                additionalProperties == null && required == null && 
+                items == null && prefixItems == null && 
+                allOf == null && anyOf == null && oneOf == null && 
+                not == null && ref == null &&
+                minLength < 0 && maxLength < 0 && minItems < 0 && maxItems < 0 &&
+                minProperties < 0 && maxProperties < 0 && pattern == null &&
+                minimum == null && maximum == null && 
+                exclusiveMinimum == null && exclusiveMaximum == null;
+    }
+    
+    private static List<StreamingJsonSchema> compileAll(JsonValue value, URL base, Loader loader) {
+        if (value instanceof JsonArray arr) {
+            final List<StreamingJsonSchema> schemas = new ArrayList(arr.size());
+            for (JsonValue v : arr) {
+                schemas.add(compile(v, base, loader));
+            }
+            return schemas;
+        }
+        return null;
+    }
+    
+    private static long getLong(JsonObject object, String name) {
+        final JsonValue value = object.get(name);
+        return value instanceof JsonNumber num ? num.longValue() : -1;
+    }
+
+    private static BigDecimal getNumber(JsonObject object, String name) {
+        final JsonValue value = object.get(name);
+        return value instanceof JsonNumber num ? num.bigDecimalValue() : null;
+    }
+    
+    /**
+     * Loads schema documents and resolves references.
+     */
+    private static class Loader {
+        
+        private final Map<String, JsonValue> documents = new HashMap();
+        private final Map<String, StreamingJsonSchema> schemas = new HashMap();
+
+        /**
+         * Resolve the schema by its absolute location.
+         * 
+         * @param location the location of the schema (including the fragment)
+         * 
+         * @return compiled schema or null if not found
+         * 
+         * @throws IllegalStateException if the schema refers to the schema
+         *         that can not be resolved
+         */
+        private StreamingJsonSchema resolve(String location) {
+            StreamingJsonSchema schema = schemas.get(location);
+            if (schema != null) {
+                return schema;
+            }
+            
+            final int idx = location.indexOf('#');
+            final String url = idx < 0 ? location : location.substring(0, idx);
+            final String fragment = idx < 0 ? "" : URLDecoder.decode(
+                    location.substring(idx + 1), StandardCharsets.UTF_8);
+            
+            final JsonValue document = load(url);
+            if (document == null) {
+                return null;
+            }
+            
+            JsonValue value;
+            try {
+                value = fragment.isEmpty() ? document : 
+                        Json.createPointer(fragment).getValue((JsonObject)document);
+            } catch (Exception ex) {
+                Logger.getLogger(StreamingJsonSchema.class.getName()).log(
+                        Level.WARNING, "unresolved schema reference {0}", location);
+                return null;
+            }
+
+            if (value instanceof JsonObject object) {
+                // register before compiling to support recursive references
+                schema = new StreamingJsonSchema();
+                schemas.put(location, schema);
+                try {
+                    schema.compile(object, new URL(url), this);
+                } catch (MalformedURLException ex) {
+                    throw new IllegalStateException("invalid schema location " + location);
+                }
+            } else {
+                schema = value == JsonValue.FALSE ? FALSE : TRUE;
+                schemas.put(location, schema);
+            }
+            return schema;
+        }
+        
+        private JsonValue load(String url) {
+            if (documents.containsKey(url)) {
+                return documents.get(url);
+            }
+            JsonValue document = null;
+            try (InputStream in = URI.create(url).toURL().openStream();
+                 JsonReader reader = Json.createReader(in)) {
+                document = reader.readValue();
+            } catch (Exception ex) {
+                Logger.getLogger(StreamingJsonSchema.class.getName()).log(
+                        Level.WARNING, "error loading schema {0} {1}", 
+                        new Object[]{url, ex.getMessage()});
+            }
+            documents.put(url, document);
+            return document;
+        }
+    }
+}
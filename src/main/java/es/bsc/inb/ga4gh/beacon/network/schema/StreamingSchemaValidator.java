@@ -0,0 +1,525 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.schema;
+
+import jakarta.json.Json;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParser.Event;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON Schema validator that checks the JSON document on the parser events.
+ * 
+ * The validator must receive all the events of the document (including the
+ * root START_OBJECT). It keeps only the state of currently open containers,
+ * so the memory used does not depend on the document size.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class StreamingSchemaValidator {
+
+    private final List<String> errors;
+    private final Matcher root;
+    private boolean complete;
+    
+    StreamingSchemaValidator(StreamingJsonSchema schema) {
+        errors = new ArrayList();
+        root = matcher(schema, null, null, errors);
+    }
+
+    /**
+     * Validate the next parser event.
+     * 
+     * @param event the parser event
+     * @param parser the parser which is positioned on the event
+     */
+    public void accept(Event event, JsonParser parser) {
+        if (!complete) {
+            complete = root.accept(event, parser);
+        }
+    }
+
+    /**
+     * Validate whole JSON document read from the parser.
+     * 
+     * @param parser the parser positioned before the document
+     * 
+     * @return the list of validation errors
+     */
+    public List<String> validate(JsonParser parser) {
+        while (!complete && parser.hasNext()) {
+            accept(parser.next(), parser);
+        }
+        return getErrors();
+    }
+
+    /**
+     * Whether the validator has received the entire JSON document.
+     * 
+     * @return true if the document is complete
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Get found validation errors formatted as 'path message'.
+     * 
+     * @return the list of errors (incomplete document is reported as an error)
+     */
+    public List<String> getErrors() {
+        if (complete) {
+            return errors;
+        }
+        final List<String> list = new ArrayList(errors);
+        list.add("/ incomplete json document");
+        return list;
+    }
+
+    private static Matcher matcher(StreamingJsonSchema schema, Matcher parent, 
+            Object name, List<String> errors) {
+        return schema == null || schema.trivial ? new Matcher(parent, name)
+                : new SchemaMatcher(schema, parent, name, errors);
+    }
+
+    /**
+     * Matcher that just skips the value.
+     */
+    private static class Matcher {
+        
+        final Matcher parent;
+        final Object name;
+        
+        private int depth;
+        
+        Matcher(Matcher parent, Object name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        /**
+         * Process the next event of the value.
+         * 
+         * @param event the event
+         * @param parser the parser
+         * 
+         * @return true when the value is complete
+         */
+        boolean accept(Event event, JsonParser parser) {
+            switch(event) {
+                case START_OBJECT, START_ARRAY -> depth++;
+                case END_OBJECT, END_ARRAY -> depth--;
+                case KEY_NAME -> { return false; }
+            }
+            return depth == 0;
+        }
+
+        final String path() {
+            if (parent == null) {
+                return "/";
+            }
+            final StringBuilder sb = new StringBuilder();
+            path(sb);
+            return sb.toString();
+        }
+        
+        private void path(StringBuilder sb) {
+            if (parent != null) {
+                parent.path(sb);
+                sb.append('/').append(name);
+            }
+        }
+    }
+
+    /**
+     * Matcher that checks the value against the schema.
+     */
+    private static class SchemaMatcher extends Matcher {
+
+        private final StreamingJsonSchema schema;
+        private final List<String> errors;
+
+        private boolean started;
+        private boolean object;
+        private int count;
+        private String key;
+        private boolean[] found;
+        
+        private Matcher[] children;
+
+        private Matcher[] branches;
+        private List<String>[] branch_errors;
+
+        SchemaMatcher(StreamingJsonSchema schema, Matcher parent, 
+                Object name, List<String> errors) {
+            super(parent, name);
+            this.schema = schema;
+            this.errors = errors;
+        }
+
+        @Override
+        boolean accept(Event event, JsonParser parser) {
+            if (!started) {
+                started = true;
+                return start(event, parser);
+            }
+
+            if (branches != null) {
+                for (Matcher branch : branches) {
+                    branch.accept(event, parser);
+                }
+            }
+
+            if (children != null) {
+                return accept(children, event, parser);
+            }
+
+            switch(event) {
+                case KEY_NAME -> {
+                    key = parser.getString();
+                    count++;
+                    children = properties(key);
+                    return false;
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    end();
+                    return true;
+                }
+            }
+            
+            // array item
+            children = items(count++);
+            return accept(children, event, parser);
+        }
+        
+        private boolean accept(Matcher[] matchers, Event event, JsonParser parser) {
+            boolean done = false;
+            for (Matcher matcher : matchers) {
+                done = matcher.accept(event, parser);
+            }
+            if (done) {
+                children = null;
+            }
+            return false;
+        }
+
+        private boolean start(Event event, JsonParser parser) {
+            if (Boolean.FALSE.equals(schema.bool)) {
+                error("value is not allowed");
+                branches = null;
+            } else {
+                final String type = getType(event, parser);
+                if (schema.types != null && !schema.types.contains(type) &&
+                    !("integer".equals(type) && schema.types.contains("number"))) {
+                    error("invalid type: " + type + " expected: " + schema.types);
+                }
+
+                switch(event) {
+                    case START_OBJECT -> object = true;
+                    case START_ARRAY -> {}
+                    default -> check(event, parser);
+                }
+                branches = branches();
+            }
+            
+            if (branches != null) {
+                for (Matcher branch : branches) {
+                    branch.accept(event, parser);
+                }
+            }
+            
+            return switch(event) {
+                case START_OBJECT, START_ARRAY -> false;
+                default -> { 
+                    combine();
+                    yield true;
+                }
+            };
+        }
+        
+        private void end() {
+            if (object) {
+                if (schema.required != null) {
+                    for (int i = 0, n = schema.required.size(); i < n; i++) {
+                        if (found == null || !found[i]) {
+                            error("missing required property: " + schema.required.get(i));
+                        }
+                    }
+                }
+                if (schema.minProperties >= 0 && count < schema.minProperties) {
+                    error("properties count " + count + " < " + schema.minProperties);
+                }
+                if (schema.maxProperties >= 0 && count > schema.maxProperties) {
+                    error("properties count " + count + " > " + schema.maxProperties);
+                }
+            } else {
+                if (schema.minItems >= 0 && count < schema.minItems) {
+                    error("array size " + count + " < " + schema.minItems);
+                }
+                if (schema.maxItems >= 0 && count > schema.maxItems) {
+                    error("array size " + count + " > " + schema.maxItems);
+                }
+            }
+            combine();
+        }
+        
+        private Matcher[] properties(String name) {
+            if (schema.required != null) {
+                final int idx = schema.required.indexOf(name);
+                if (idx >= 0) {
+                    if (found == null) {
+                        found = new boolean[schema.required.size()];
+                    }
+                    found[idx] = true;
+                }
+            }
+
+            Matcher[] matchers = null;
+            
+            final StreamingJsonSchema property = schema.properties == null 
+                    ? null : schema.properties.get(name);
+            if (property != null) {
+                matchers = add(matchers, matcher(property, this, name, errors));
+            }
+            if (schema.patternProperties != null) {
+                for (Map.Entry<java.util.regex.Pattern, StreamingJsonSchema> entry : 
+                        schema.patternProperties.entrySet()) {
+                    if (entry.getKey().matcher(name).find()) {
+                        matchers = add(matchers, matcher(entry.getValue(), this, name, errors));
+                    }
+                }
+            }
+            if (matchers == null) {
+                matchers = add(matchers, matcher(schema.additionalProperties, this, name, errors));
+            }
+            return matchers;
+        }
+
+        private Matcher[] items(int idx) {
+            final StreamingJsonSchema item;
+            if (schema.prefixItems != null && idx < schema.prefixItems.size()) {
+                item = schema.prefixItems.get(idx);
+            } else {
+                item = schema.items;
+            }
+            return new Matcher[] {matcher(item, this, idx, errors)};
+        }
+
+        private Matcher[] branches() {
+            Matcher[] matchers = null;
+            if (schema.ref != null) {
+                matchers = add(matchers, matcher(schema.ref, parent, name, errors));
+            }
+            if (schema.allOf != null) {
+                for (StreamingJsonSchema s : schema.allOf) {
+                    matchers = add(matchers, matcher(s, parent, name, errors));
+                }
+            }
+            if (schema.anyOf != null || schema.oneOf != null || schema.not != null) {
+                final List<List<String>> lists = new ArrayList();
+                matchers = branches(matchers, schema.anyOf, lists);
+                matchers = branches(matchers, schema.oneOf, lists);
+                if (schema.not != null) {
+                    matchers = branches(matchers, Collections.singletonList(schema.not), lists);
+                }
+                branch_errors = lists.toArray(List[]::new);
+            }
+            return matchers;
+        }
+        
+        private Matcher[] branches(Matcher[] matchers, 
+                List<StreamingJsonSchema> schemas, List<List<String>> lists) {
+            if (schemas != null) {
+                for (StreamingJsonSchema s : schemas) {
+                    final List<String> list = new ArrayList();
+                    lists.add(list);
+                    matchers = add(matchers, matcher(s, parent, name, list));
+                }
+            }
+            return matchers;
+        }
+
+        /**
+         * Evaluate 'anyOf', 'oneOf' and 'not' branches.
+         */
+        private void combine() {
+            if (branch_errors == null) {
+                return;
+            }
+            int idx = 0;
+            if (schema.anyOf != null) {
+                final int n = schema.anyOf.size();
+                if (valid(idx, n) == 0) {
+                    error("value does not match any 'anyOf' schema");
+                    errors.addAll(closest(idx, n));
+                }
+                idx += n;
+            }
+            if (schema.oneOf != null) {
+                final int n = schema.oneOf.size();
+                final int valid = valid(idx, n);
+                if (valid == 0) {
+                    error("value does not match any 'oneOf' schema");
+                    errors.addAll(closest(idx, n));
+                } else if (valid > 1) {
+                    error("value matches " + valid + " 'oneOf' schemas");
+                }
+                idx += n;
+            }
+            if (schema.not != null && branch_errors[idx].isEmpty()) {
+                error("value matches 'not' schema");
+            }
+        }
+        
+        private int valid(int from, int n) {
+            int valid = 0;
+            for (int i = from; i < from + n; i++) {
+                if (branch_errors[i].isEmpty()) {
+                    valid++;
+                }
+            }
+            return valid;
+        }
+
+        /**
+         * Get the errors of the branch which is the closest to be valid.
+         */
+        private List<String> closest(int from, int n) {
+            List<String> list = branch_errors[from];
+            for (int i = from + 1; i < from + n; i++) {
+                if (branch_errors[i].size() < list.size()) {
+                    list = branch_errors[i];
+                }
+            }
+            return list;
+        }
+
+        private void check(Event event, JsonParser parser) {
+            if (schema.constant != null || schema.enumeration != null) {
+                final JsonValue value = getValue(event, parser);
+                if (schema.constant != null && !equals(schema.constant, value)) {
+                    error("value " + value + " is not equal to const " + schema.constant);
+                }
+                if (schema.enumeration != null && 
+                    schema.enumeration.stream().noneMatch(v -> equals(v, value))) {
+                    error("value " + value + " is not one of " + schema.enumeration);
+                }
+            }
+            switch(event) {
+                case VALUE_STRING -> {
+                    if (schema.minLength >= 0 || schema.maxLength >= 0 || schema.pattern != null) {
+                        final String str = parser.getString();
+                        final long length = str.codePointCount(0, str.length());
+                        if (schema.minLength >= 0 && length < schema.minLength) {
+                            error("string length " + length + " < " + schema.minLength);
+                        }
+                        if (schema.maxLength >= 0 && length > schema.maxLength) {
+                            error("string length " + length + " > " + schema.maxLength);
+                        }
+                        if (schema.pattern != null && !schema.pattern.matcher(str).find()) {
+                            error("string '" + str + "' does not match pattern " + schema.pattern);
+                        }
+                    }
+                }
+                case VALUE_NUMBER -> {
+                    if (schema.minimum != null || schema.maximum != null ||
+                        schema.exclusiveMinimum != null || schema.exclusiveMaximum != null) {
+                        final BigDecimal number = parser.getBigDecimal();
+                        if (schema.minimum != null && number.compareTo(schema.minimum) < 0) {
+                            error("value " + number + " < " + schema.minimum);
+                        }
+                        if (schema.maximum != null && number.compareTo(schema.maximum) > 0) {
+                            error("value " + number + " > " + schema.maximum);
+                        }
+                        if (schema.exclusiveMinimum != null && number.compareTo(schema.exclusiveMinimum) <= 0) {
+                            error("value " + number + " <= " + schema.exclusiveMinimum);
+                        }
+                        if (schema.exclusiveMaximum != null && number.compareTo(schema.exclusiveMaximum) >= 0) {
+                            error("value " + number + " >= " + schema.exclusiveMaximum);
+                        }
+                    }
+                }
+            }
+        }
+        
+        private void error(String message) {
+            errors.add(path() + " " + message);
+        }
+
+        private static String getType(Event event, JsonParser parser) {
+            return switch(event) {
+                case START_OBJECT -> "object";
+                case START_ARRAY -> "array";
+                case VALUE_STRING -> "string";
+                case VALUE_NUMBER -> parser.isIntegralNumber() || 
+                        parser.getBigDecimal().stripTrailingZeros().scale() <= 0 ? "integer" : "number";
+                case VALUE_TRUE, VALUE_FALSE -> "boolean";
+                default -> "null";
+            };
+        }
+        
+        private static JsonValue getValue(Event event, JsonParser parser) {
+            return switch(event) {
+                case VALUE_STRING -> Json.createValue(parser.getString());
+                case VALUE_NUMBER -> Json.createValue(parser.getBigDecimal());
+                case VALUE_TRUE -> JsonValue.TRUE;
+                case VALUE_FALSE -> JsonValue.FALSE;
+                default -> JsonValue.NULL;
+            };
+        }
+
+        /**
+         * Compare scalar JSON values (numbers are compared by value).
+         */
+        private static boolean equals(JsonValue v1, JsonValue v2) {
+            if (v1 instanceof JsonNumber n1 && v2 instanceof JsonNumber n2) {
+                return n1.bigDecimalValue().compareTo(n2.bigDecimalValue()) == 0;
+            }
+            if (v1 instanceof JsonString s1 && v2 instanceof JsonString s2) {
+                return s1.getString().equals(s2.getString());
+            }
+            return v1.equals(v2);
+        }
+
+        private static Matcher[] add(Matcher[] matchers, Matcher matcher) {
+            if (matchers == null) {
+                return new Matcher[] {matcher};
+            }
+            final Matcher[] arr = new Matcher[matchers.length + 1];
+            System.arraycopy(matchers, 0, arr, 0, matchers.length);
+            arr[matchers.length] = matcher;
+            return arr;
+        }
+    }
+}
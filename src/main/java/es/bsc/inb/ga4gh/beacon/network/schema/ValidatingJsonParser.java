@@ -0,0 +1,194 @@
+/**
+ * *****************************************************************************
+ * Copyright (C) 2026 ELIXIR ES, Spanish National Bioinformatics Institute (INB)
+ * and Barcelona Supercomputing Center (BSC)
+ *
+ * Modifications to the initial code base are copyright of their respective
+ * authors, or their employers as appropriate.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ * *****************************************************************************
+ */
+
+package es.bsc.inb.ga4gh.beacon.network.schema;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonLocation;
+import jakarta.json.stream.JsonParser;
+import java.math.BigDecimal;
+
+/**
+ * JSON Parser wrapper that passes all parsed events through the schema validator.
+ * 
+ * The wrapper is used to validate the document while it is deserialized.
+ * All methods that read values (getValue(), getObject(), skipObject() etc.)
+ * are implemented via next(), so the validator receives every event.
+ * 
+ * @author Dmitry Repchevsky
+ */
+
+public class ValidatingJsonParser implements JsonParser {
+
+    private final JsonParser parser;
+    private final StreamingSchemaValidator validator;
+    
+    /**
+     * Whether the synthetic start event is still to be sent to the validator.
+     */
+    private boolean pending;
+    private Event current;
+
+    /**
+     * @param parser the parser to be wrapped
+     * @param validator the validator to receive the events
+     * @param started whether the parser is already positioned inside the root 
+     *        container, so the validator must receive the synthetic start event
+     *        before the first event read
+     */
+    public ValidatingJsonParser(JsonParser parser, 
+            StreamingSchemaValidator validator, boolean started) {
+        this.parser = parser;
+        this.validator = validator;
+        this.pending = started;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return parser.hasNext();
+    }
+
+    @Override
+    public Event next() {
+        final Event event = parser.next();
+        if (pending) {
+            pending = false;
+            validator.accept(event == Event.KEY_NAME || event == Event.END_OBJECT
+                    ? Event.START_OBJECT : Event.START_ARRAY, parser);
+        }
+        validator.accept(event, parser);
+        return current = event;
+    }
+
+    @Override
+    public Event currentEvent() {
+        return current;
+    }
+
+    @Override
+    public String getString() {
+        return parser.getString();
+    }
+
+    @Override
+    public boolean isIntegralNumber() {
+        return parser.isIntegralNumber();
+    }
+
+    @Override
+    public int getInt() {
+        return parser.getInt();
+    }
+
+    @Override
+    public long getLong() {
+        return parser.getLong();
+    }
+
+    @Override
+    public BigDecimal getBigDecimal() {
+        return parser.getBigDecimal();
+    }
+
+    @Override
+    public JsonLocation getLocation() {
+        return parser.getLocation();
+    }
+
+    @Override
+    public JsonValue getValue() {
+        return switch(current) {
+            case START_OBJECT -> getObject();
+            case START_ARRAY -> getArray();
+            case KEY_NAME, VALUE_STRING -> Json.createValue(parser.getString());
+            case VALUE_NUMBER -> parser.isIntegralNumber() 
+                    ? Json.createValue(parser.getLong()) 
+                    : Json.createValue(parser.getBigDecimal());
+            case VALUE_TRUE -> JsonValue.TRUE;
+            case VALUE_FALSE -> JsonValue.FALSE;
+            case VALUE_NULL -> JsonValue.NULL;
+            default -> throw new IllegalStateException("unexpected event: " + current);
+        };
+    }
+
+    @Override
+    public JsonObject getObject() {
+        if (current != Event.START_OBJECT) {
+            throw new IllegalStateException("unexpected event: " + current);
+        }
+        final JsonObjectBuilder builder = Json.createObjectBuilder();
+        while (next() == Event.KEY_NAME) {
+            final String key = parser.getString();
+            next();
+            builder.add(key, getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public JsonArray getArray() {
+        if (current != Event.START_ARRAY) {
+            throw new IllegalStateException("unexpected event: " + current);
+        }
+        final JsonArrayBuilder builder = Json.createArrayBuilder();
+        while (next() != Event.END_ARRAY) {
+            builder.add(getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void skipObject() {
+        skip(Event.START_OBJECT, Event.END_OBJECT);
+    }
+
+    @Override
+    public void skipArray() {
+        skip(Event.START_ARRAY, Event.END_ARRAY);
+    }
+
+    private void skip(Event start, Event end) {
+        if (current == start) {
+            for (int depth = 1; depth > 0;) {
+                final Event event = next();
+                if (event == start) {
+                    depth++;
+                } else if (event == end) {
+                    depth--;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        parser.close();
+    }
+}